@@ -0,0 +1,177 @@
+package pantrypal.bench;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Generates reproducible PantryPal data directories for benchmarks.
+ * Each dataset lives under its own temporary user.home so runs never touch real data.
+ */
+public final class BenchData {
+    public static final String PASSWORD = "password"; // Password of every generated user
+
+    private static final String[] ITEM_NAMES = {"Milk", "Eggs", "Flour", "Rice", "Beans", "Apples", "Cheese", "Pasta"};
+    private static final String[] UNITS = {"liters", "pcs", "kg", "g", "cans"};
+    private static final String[] CATEGORIES = {"Dairy", "Baking", "Grains", "Produce", "Canned"};
+
+    private BenchData() {
+    }
+
+    /**
+     * Creates an empty temporary home directory and points user.home at it.
+     *
+     * @return The new home directory
+     * @throws IOException If the directory cannot be created
+     */
+    public static Path useTempHome() throws IOException {
+        Path home = Files.createTempDirectory("pantrypal-bench");
+        Files.createDirectories(home.resolve("PantryPal"));
+        System.setProperty("user.home", home.toString());
+        return home;
+    }
+
+    /**
+     * Silences the application's progress messages so they don't flood benchmark output.
+     */
+    public static void silenceStdout() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Returns the id of the i-th generated user.
+     */
+    public static String userId(int i) {
+        return String.format("U%015d", i);
+    }
+
+    /**
+     * Returns the username of the i-th generated user.
+     */
+    public static String username(int i) {
+        return "user" + i;
+    }
+
+    /**
+     * Writes a users.csv with the given number of users, all sharing {@link #PASSWORD}.
+     *
+     * @param home  The home directory to write into
+     * @param users The number of users
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeUsers(Path home, int users) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(home.resolve("PantryPal").resolve("users.csv"), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < users; i++) {
+                String salt = Base64.getEncoder().encodeToString(String.format("salt%012d", i).getBytes(StandardCharsets.UTF_8));
+                writer.write(userId(i) + "," + username(i) + "," + hash(PASSWORD, salt) + "," + salt + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes a pantry.csv holding {@code rows} items spread evenly over {@code users} users,
+     * interleaved the way independent households would add them.
+     *
+     * @param home  The home directory to write into
+     * @param rows  The total number of pantry records
+     * @param users The number of users owning them
+     * @return The path of the pantry file
+     * @throws IOException If an I/O error occurs
+     */
+    public static Path writePantry(Path home, int rows, int users) throws IOException {
+        Path pantryPath = home.resolve("PantryPal").resolve("pantry.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(pantryPath, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                writer.write(userId(i % users) + "," + ITEM_NAMES[i % ITEM_NAMES.length] + " " + (i / users) + ","
+                        + (1 + i % 12) + "," + UNITS[i % UNITS.length] + ","
+                        + LocalDate.of(2025, 1, 1).plusDays(i % 730) + "," + CATEGORIES[i % CATEGORIES.length] + "\n");
+            }
+        }
+        return pantryPath;
+    }
+
+    /**
+     * Writes a pantry import file with a header row, one row in a hundred of which is invalid.
+     *
+     * @param file The file to write; a name ending in .json writes JSON Lines, anything else CSV
+     * @param rows The number of rows
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeImportFile(Path file, int rows) throws IOException {
+        boolean json = file.getFileName().toString().endsWith(".json");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (!json) {
+                writer.write("itemName,quantity,unit,expirationDate,category\n");
+            }
+            for (int i = 0; i < rows; i++) {
+                String name = ITEM_NAMES[i % ITEM_NAMES.length] + " " + i;
+                String quantity = i % 100 == 99 ? "lots" : String.valueOf(1 + i % 12);
+                String date = LocalDate.of(2025, 1, 1).plusDays(i % 730).toString();
+                if (json) {
+                    writer.write("{\"itemName\":\"" + name + "\",\"quantity\":" + quantity + ",\"unit\":\""
+                            + UNITS[i % UNITS.length] + "\",\"expirationDate\":\"" + date + "\",\"category\":\""
+                            + CATEGORIES[i % CATEGORIES.length] + "\"}\n");
+                } else {
+                    writer.write(name + "," + quantity + "," + UNITS[i % UNITS.length] + "," + date + ","
+                            + CATEGORIES[i % CATEGORIES.length] + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes per-user notification segments holding {@code rows} notifications spread evenly over {@code users} users.
+     *
+     * @param home  The home directory to write into
+     * @param rows  The total number of notifications
+     * @param users The number of users owning them
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeNotifications(Path home, int rows, int users) throws IOException {
+        Files.createDirectories(home.resolve("PantryPal").resolve("notifications"));
+        for (int user = 0; user < users; user++) {
+            try (BufferedWriter writer = Files.newBufferedWriter(notificationSegment(home, user), StandardCharsets.UTF_8)) {
+                for (int i = user; i < rows; i += users) {
+                    writer.write(ITEM_NAMES[i % ITEM_NAMES.length] + " " + i + " expires on "
+                            + LocalDate.of(2025, 1, 1).plusDays(i % 730) + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the notification segment file of the i-th generated user.
+     */
+    public static Path notificationSegment(Path home, int i) {
+        return home.resolve("PantryPal").resolve("notifications").resolve(userId(i) + ".csv");
+    }
+
+    /**
+     * Deletes a generated home directory.
+     *
+     * @param home The directory to delete
+     * @throws IOException If an I/O error occurs
+     */
+    public static void delete(Path home) throws IOException {
+        try (Stream<Path> paths = Files.walk(home)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static String hash(String password, String salt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest((password + salt).getBytes()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.PantryColumns;
+import pantrypal.PantryItem;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares bulk pantry queries over a {@code List<PantryItem>} with the same queries over
+ * {@link PantryColumns}: counting expired items and summing quantities by category.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnsBenchmark {
+    private static final String[] UNITS = {"liters", "pcs", "kg", "g", "cans"};
+    private static final String[] CATEGORIES = {"Dairy", "Baking", "Grains", "Produce", "Canned"};
+
+    @Param({"1000", "100000", "1000000"})
+    public int items;
+
+    private List<PantryItem> list;
+    private PantryColumns columns;
+    private LocalDate today;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        list = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            list.add(new PantryItem("Item " + i, 1 + i % 9, UNITS[i % UNITS.length], start.plusDays(i % 365),
+                    CATEGORIES[i % CATEGORIES.length]));
+        }
+        columns = PantryColumns.of(list);
+        today = start.plusDays(180);
+    }
+
+    @Benchmark
+    public int countExpiredList() {
+        int count = 0;
+        for (PantryItem item : list) {
+            if (item.isExpired(today)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int countExpiredColumns() {
+        return columns.countExpired(today);
+    }
+
+    @Benchmark
+    public Map<String, Long> sumByCategoryList() {
+        Map<String, Long> sums = new HashMap<>();
+        for (PantryItem item : list) {
+            sums.merge(item.getCategory(), (long) item.getQuantity(), Long::sum);
+        }
+        return sums;
+    }
+
+    @Benchmark
+    public long[] sumByCategoryColumns() {
+        return columns.sumQuantityByCategory();
+    }
+}
@@ -0,0 +1,86 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.CsvCodec;
+import pantrypal.PantryExporter;
+import pantrypal.PantryItem;
+import pantrypal.PantryStore;
+import pantrypal.User;
+import pantrypal.UserDirectory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares exporting every pantry with {@link PantryExporter}, as CSV, gzipped CSV and JSON Lines,
+ * against reading each pantry into a list with {@link PantryStore#read} and writing it out.
+ * Run with {@code -prof gc} to compare allocation as well as time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private Path home;
+    private UserDirectory users;
+    private PantryStore store;
+    private PantryExporter exporter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchData.silenceStdout();
+        home = BenchData.useTempHome();
+        int userCount = Math.max(1, rows / 100);
+        BenchData.writeUsers(home, userCount);
+        store = new PantryStore(BenchData.writePantry(home, rows, userCount));
+        users = User.loadUsers();
+        exporter = new PantryExporter(users, store);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.delete(home);
+    }
+
+    @Benchmark
+    public long streamCsv() throws IOException {
+        return exporter.exportPantries(home.resolve("export.csv"));
+    }
+
+    @Benchmark
+    public long streamCsvGzip() throws IOException {
+        return exporter.exportPantries(home.resolve("export.csv.gz"));
+    }
+
+    @Benchmark
+    public long streamJson() throws IOException {
+        return exporter.exportPantries(home.resolve("export.jsonl"));
+    }
+
+    @Benchmark
+    public long readListsCsv() throws IOException {
+        long count = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(home.resolve("lists.csv"), StandardCharsets.UTF_8)) {
+            writer.write(CsvCodec.record("username", "itemName", "quantity", "unit", "expirationDate", "category"));
+            for (User user : users) {
+                List<PantryItem> items = store.read(user.getId());
+                for (PantryItem item : items) {
+                    writer.write(CsvCodec.record(user.getUsername(), item.getItemName(), item.getQuantity(),
+                            item.getUnit(), item.getExpirationDate(), item.getCategory()));
+                }
+                count += items.size();
+            }
+        }
+        return count;
+    }
+}
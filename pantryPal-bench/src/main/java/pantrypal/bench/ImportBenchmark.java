@@ -0,0 +1,94 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.PantryImporter;
+import pantrypal.PantryStore;
+import pantrypal.WriteBehindQueue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares importing a pantry file with {@link PantryImporter} against adding its rows one at a time
+ * through {@link PantryStore#add}, as onboarding did before. Each invocation imports into a fresh,
+ * empty store, and includes writing the items to disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+    private static final String USER_ID = BenchData.userId(0);
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private Path home;
+    private Path csvFile;
+    private Path jsonFile;
+    private Path pantryPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchData.silenceStdout();
+        home = BenchData.useTempHome();
+        csvFile = home.resolve("import.csv");
+        jsonFile = home.resolve("import.json");
+        BenchData.writeImportFile(csvFile, rows);
+        BenchData.writeImportFile(jsonFile, rows);
+    }
+
+    @Setup(Level.Invocation)
+    public void freshPantry() throws IOException {
+        pantryPath = Files.createTempDirectory(home, "pantry").resolve("pantry.csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.delete(home);
+    }
+
+    @Benchmark
+    public int importCsv() throws IOException {
+        return importFile(csvFile);
+    }
+
+    @Benchmark
+    public int importJson() throws IOException {
+        return importFile(jsonFile);
+    }
+
+    @Benchmark
+    public int rowByRowCsv() throws IOException {
+        PantryStore store = new PantryStore(pantryPath);
+        int imported = 0;
+        try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            reader.readLine(); // Header
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = line.split(",");
+                try {
+                    Integer.parseInt(fields[1]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                store.add(USER_ID, fields[0], fields[1], fields[2], LocalDate.parse(fields[3]), fields[4]);
+                imported++;
+            }
+        }
+        WriteBehindQueue.shared().flush();
+        return imported;
+    }
+
+    private int importFile(Path file) throws IOException {
+        PantryImporter.Result result = new PantryImporter(new PantryStore(pantryPath)).importFile(USER_ID, file);
+        WriteBehindQueue.shared().flush();
+        return result.getImportedCount();
+    }
+}
@@ -0,0 +1,91 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.ItemNameIndex;
+import pantrypal.PantryItem;
+import pantrypal.PantryStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ItemNameIndex} lookups in one pantry of 1,000 to 100,000 distinct names: completing
+ * a prefix, matching text with a typo and a miss, against a linear scan of the pantry's names for
+ * the same miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemNameIndexBenchmark {
+    private static final String USER_ID = BenchData.userId(0);
+    private static final int LIMIT = 8;
+    private static final String[] WORDS = {"Milk", "Eggs", "Flour", "Rice", "Beans", "Apples", "Cheese", "Pasta",
+            "Tomato", "Chicken", "Yogurt", "Butter", "Spinach", "Oats", "Lentils", "Coffee"};
+
+    @Param({"1000", "100000"})
+    public int names;
+
+    private Path home;
+    private ItemNameIndex index;
+    private List<PantryItem> pantry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchData.silenceStdout();
+        home = BenchData.useTempHome();
+        PantryStore store = new PantryStore(home.resolve("PantryPal").resolve("pantry.csv"));
+        Random random = new Random(42);
+        List<PantryItem> items = new ArrayList<>(names);
+        for (int i = 0; i < names; i++) {
+            items.add(new PantryItem(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + i, 1, "pcs", LocalDate.of(2030, 1, 1), "Bench"));
+        }
+        store.addAll(USER_ID, items);
+        index = ItemNameIndex.forStore(store);
+        index.suggest(USER_ID, "warm up", LIMIT); // Builds the user's names
+        pantry = store.read(USER_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.delete(home);
+    }
+
+    @Benchmark
+    public List<String> completePrefix() throws IOException {
+        return index.complete(USER_ID, "spin", LIMIT);
+    }
+
+    @Benchmark
+    public List<String> suggestWithTypo() throws IOException {
+        return index.suggest(USER_ID, "spinahc", LIMIT);
+    }
+
+    @Benchmark
+    public List<String> suggestNoMatch() throws IOException {
+        return index.suggest(USER_ID, "quinoa", LIMIT);
+    }
+
+    @Benchmark
+    public List<String> linearScanNoMatch() {
+        List<String> found = new ArrayList<>();
+        for (PantryItem item : pantry) {
+            if (item.getItemName().toLowerCase(Locale.ROOT).contains("quinoa")) {
+                found.add(item.getItemName());
+                if (found.size() == LIMIT) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,42 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.User;
+import pantrypal.UserDirectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading users.csv into the username directory at startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadUsersBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int users;
+
+    private Path home;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchData.silenceStdout();
+        home = BenchData.useTempHome();
+        BenchData.writeUsers(home, users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.delete(home);
+    }
+
+    @Benchmark
+    public UserDirectory loadUsers() {
+        return User.loadUsers();
+    }
+}
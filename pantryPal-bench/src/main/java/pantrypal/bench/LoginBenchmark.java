@@ -0,0 +1,47 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.PantryApp;
+import pantrypal.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures login latency as the number of registered users grows.
+ * With the username index, the score should stay flat from 1,000 to 10,000,000 users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int users;
+
+    private Path home;
+    private PantryApp app;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchData.silenceStdout();
+        home = BenchData.useTempHome();
+        BenchData.writeUsers(home, users);
+        app = new PantryApp("PantryPal");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.delete(home);
+    }
+
+    @Benchmark
+    public User login() {
+        next = (next + 7919) % users; // Spread lookups over the whole directory
+        return app.loginUser(BenchData.username(next), BenchData.PASSWORD);
+    }
+}
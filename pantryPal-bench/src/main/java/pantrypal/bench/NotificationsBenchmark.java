@@ -0,0 +1,68 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.Notifications;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading and clearing one user's notifications as the total number of notifications grows.
+ * Every user owns 1,000 notifications, so with per-user segments the scores should stay flat across sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationsBenchmark {
+    private static final int ROWS_PER_USER = 1000;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private Path home;
+    private Path segment;
+    private byte[] segmentBytes;
+    private Notifications notifications;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchData.silenceStdout();
+        home = BenchData.useTempHome();
+        BenchData.writeNotifications(home, rows, Math.max(1, rows / ROWS_PER_USER));
+        segment = BenchData.notificationSegment(home, 0);
+        segmentBytes = Files.readAllBytes(segment);
+        notifications = new Notifications(BenchData.userId(0));
+    }
+
+    /**
+     * Puts back the segment the previous clear dropped. Only clearNotifications needs this,
+     * but restoring an unchanged file is cheap next to a trial.
+     */
+    @Setup(Level.Invocation)
+    public void restoreSegment() throws IOException {
+        if (!Files.exists(segment)) {
+            Files.write(segment, segmentBytes);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.delete(home);
+    }
+
+    @Benchmark
+    public List<String> getNotifications() throws IOException {
+        return notifications.getNotifications();
+    }
+
+    @Benchmark
+    public void clearNotifications() throws IOException {
+        notifications.clearNotifications();
+    }
+}
@@ -0,0 +1,62 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.PantryItem;
+import pantrypal.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading and removing from one user's pantry as the shared pantry file grows.
+ * Every user owns 100 rows, so with the per-user index the scores should stay flat across sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PantryBenchmark {
+    private static final int ROWS_PER_USER = 100;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private Path home;
+    private User user;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchData.silenceStdout();
+        home = BenchData.useTempHome();
+        BenchData.writePantry(home, rows, Math.max(1, rows / ROWS_PER_USER));
+        user = new User(BenchData.userId(0), BenchData.username(0), "", "");
+        user.viewPantry(); // Build the index outside the measurement
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.delete(home);
+    }
+
+    @Benchmark
+    public List<PantryItem> viewPantry() {
+        return user.viewPantry();
+    }
+
+    /**
+     * Removes an item and queues it back, so the pantry keeps its size across invocations.
+     * The re-add is a queued append and small next to the removal's existence check.
+     */
+    @Benchmark
+    public boolean removeFromPantry() throws IOException {
+        String itemName = "Bench item " + (next++ % 8);
+        User.addToPantry(user.getId(), itemName, "1", "pcs", LocalDate.of(2025, 1, 1), "Bench");
+        return User.removeFromPantry(user.getId(), itemName);
+    }
+}
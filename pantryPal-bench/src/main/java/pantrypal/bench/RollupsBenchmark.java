@@ -0,0 +1,75 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.PantryRollups;
+import pantrypal.PantryStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a home screen overview read from {@link PantryRollups} against computing the same totals
+ * with one pass over the pantry, for one user with 1,000 to 1,000,000 items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RollupsBenchmark {
+    private static final String USER_ID = BenchData.userId(0);
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+
+    @Param({"1000", "1000000"})
+    public int rows;
+
+    private Path home;
+    private PantryStore store;
+    private PantryRollups rollups;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchData.silenceStdout();
+        home = BenchData.useTempHome();
+        BenchData.writeUsers(home, 1);
+        store = new PantryStore(BenchData.writePantry(home, rows, 1));
+        rollups = PantryRollups.forStore(store);
+        rollups.overview(USER_ID, TODAY); // Builds the user's totals
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.delete(home);
+    }
+
+    @Benchmark
+    public PantryRollups.Overview rollupOverview() throws IOException {
+        return rollups.overview(USER_ID, TODAY);
+    }
+
+    @Benchmark
+    public long[] scanOverview() throws IOException {
+        long sunday = TODAY.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY)).toEpochDay();
+        long today = TODAY.toEpochDay();
+        long[] totals = new long[4]; // Items, quantity, expired, expiring this week
+        Map<String, long[]> byCategory = new HashMap<>();
+        store.forEachItem(USER_ID, item -> {
+            long day = item.getExpirationDate().toEpochDay();
+            totals[0]++;
+            totals[1] += item.getQuantity();
+            totals[2] += day < today ? 1 : 0;
+            totals[3] += day >= today && day <= sunday ? 1 : 0;
+            long[] category = byCategory.computeIfAbsent(item.getCategory(), c -> new long[2]);
+            category[0]++;
+            category[1] += item.getQuantity();
+        });
+        return totals;
+    }
+}
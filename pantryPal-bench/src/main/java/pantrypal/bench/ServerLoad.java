@@ -0,0 +1,140 @@
+package pantrypal.bench;
+
+import pantrypal.LatencyHistogram;
+import pantrypal.PantryApp;
+import pantrypal.PantryServer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures {@link PantryServer} throughput with many concurrent sessions. Starts a server on a
+ * temporary {@code user.home}, registers and logs in one user per session, then has every session
+ * loop on its own virtual thread through a mix of pantry, shopping list and notification requests
+ * for a fixed time, and reports requests per second and latency percentiles.
+ *
+ * <p>Not a JMH benchmark; run it directly:</p>
+ * <pre>
+ * java -cp target/benchmarks.jar pantrypal.bench.ServerLoad [sessions] [seconds]
+ * </pre>
+ */
+public final class ServerLoad {
+    private static final String JSON = "application/json";
+
+    private ServerLoad() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        System.setProperty("user.home", Files.createTempDirectory("pantrypal-server").toString());
+        System.setProperty("sun.net.httpserver.nodelay", "true"); // As PantryApp's --server does
+
+        PantryServer server = new PantryServer(new PantryApp("PantryPal"),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(10)).build();
+
+        // Every session gets its own user
+        List<Future<String>> logins = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            String credentials = "{\"username\":\"load" + i + "\",\"password\":\"secret" + i + "\"}";
+            logins.add(executor.submit(() -> {
+                send(client, post(base + "/api/register", credentials, null));
+                String body = send(client, post(base + "/api/login", credentials, null));
+                return body.substring(body.indexOf(":\"") + 2, body.lastIndexOf('"'));
+            }));
+        }
+        List<String> tokens = new ArrayList<>();
+        for (Future<String> login : logins) {
+            tokens.add(login.get());
+        }
+        System.out.printf("%d sessions logged in%n", server.sessionCount());
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<Future<?>> clients = new ArrayList<>();
+        for (String token : tokens) {
+            clients.add(executor.submit(() -> {
+                for (int i = 0; System.nanoTime() < deadline; i++) {
+                    for (HttpRequest request : mix(base, token, i)) {
+                        long start = System.nanoTime();
+                        try {
+                            send(client, request);
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+                        latency.recordSince(start);
+                        requests.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : clients) {
+            future.get();
+        }
+
+        System.out.printf(Locale.ROOT, "%d sessions, %d s: %d requests, %.0f requests/s, %d errors%n",
+                sessions, seconds, requests.sum(), requests.sum() / (double) seconds, errors.sum());
+        System.out.printf(Locale.ROOT, "latency p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms%n",
+                latency.percentile(50) / 1e6, latency.percentile(90) / 1e6, latency.percentile(99) / 1e6,
+                latency.max() / 1e6);
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * One round of a session's requests: mostly reads, with an add to the pantry and the shopping list.
+     */
+    private static List<HttpRequest> mix(String base, String token, int round) {
+        String pantryItem = "{\"itemName\":\"Item " + round + "\",\"quantity\":1,\"unit\":\"pcs\","
+                + "\"expirationDate\":\"2030-01-01\",\"category\":\"Load\"}";
+        String shoppingItem = "{\"itemName\":\"Item " + round % 20 + "\",\"quantity\":1,\"priority\":\"Low\"}";
+        return List.of(
+                get(base + "/api/pantry", token),
+                post(base + "/api/pantry", pantryItem, token),
+                get(base + "/api/shopping", token),
+                post(base + "/api/shopping", shoppingItem, token),
+                get(base + "/api/notifications", token));
+    }
+
+    private static HttpRequest get(String uri, String token) {
+        return HttpRequest.newBuilder(URI.create(uri)).header("Authorization", "Bearer " + token).GET().build();
+    }
+
+    private static HttpRequest post(String uri, String body, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(uri)).header("Content-Type", JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder.build();
+    }
+
+    private static String send(HttpClient client, HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+}
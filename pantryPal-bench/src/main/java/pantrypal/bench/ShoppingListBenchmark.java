@@ -0,0 +1,45 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.ShoppingList;
+import pantrypal.ShoppingListItem;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures removing an item from a shopping list by name as the list grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShoppingListBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int items;
+
+    private ShoppingList list;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = new ShoppingList();
+        for (int i = 0; i < items; i++) {
+            list.addItem(new ShoppingListItem("Item " + i, 1 + i % 5, "Medium"));
+        }
+        list.markSaved(); // Don't track the setup as unsaved changes
+    }
+
+    /**
+     * Removes an item spread over the whole list and adds it back, so the list keeps its size.
+     */
+    @Benchmark
+    public boolean removeItem() {
+        next = (next + 7919) % items;
+        String itemName = "Item " + next;
+        boolean removed = list.removeItem(itemName);
+        list.addItem(new ShoppingListItem(itemName, 1, "Medium"));
+        return removed;
+    }
+}
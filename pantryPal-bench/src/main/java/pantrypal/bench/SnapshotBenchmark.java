@@ -0,0 +1,64 @@
+package pantrypal.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pantrypal.PantryItem;
+import pantrypal.PantryStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares cold-loading the pantry from the CSV log with loading it from a binary snapshot.
+ * Each invocation opens a fresh store, so the index (or snapshot directory) is rebuilt every time.
+ * Bytes on disk for both formats are printed to stderr during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private Path csvHome;
+    private Path snapshotHome;
+    private Path csvPantry;
+    private Path snapshotPantry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchData.silenceStdout();
+        int users = Math.max(1, rows / 100);
+
+        csvHome = BenchData.useTempHome();
+        csvPantry = BenchData.writePantry(csvHome, rows, users);
+
+        snapshotHome = BenchData.useTempHome();
+        snapshotPantry = BenchData.writePantry(snapshotHome, rows, users);
+        new PantryStore(snapshotPantry).writeSnapshot();
+
+        Path snapshotFile = snapshotPantry.resolveSibling("pantry.snap");
+        System.err.printf("rows=%d csv=%d bytes snapshot=%d bytes%n", rows, Files.size(csvPantry), Files.size(snapshotFile));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.delete(csvHome);
+        BenchData.delete(snapshotHome);
+    }
+
+    @Benchmark
+    public List<PantryItem> coldLoadFromCsv() throws IOException {
+        return new PantryStore(csvPantry).read(BenchData.userId(0));
+    }
+
+    @Benchmark
+    public List<PantryItem> coldLoadFromSnapshot() throws IOException {
+        return new PantryStore(snapshotPantry).read(BenchData.userId(0));
+    }
+}
@@ -0,0 +1,144 @@
+package pantrypal.bench;
+
+import pantrypal.Notifications;
+import pantrypal.PantryStore;
+import pantrypal.WriteBehindQueue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Hammers one data directory from several JVMs at once, each running several threads, then checks
+ * that nothing was lost or duplicated. Every worker adds and removes items in its own pantry while
+ * other workers compact the shared pantry file and clear their notifications, and all of them append
+ * to one shared notification segment.
+ *
+ * <p>Not a JMH benchmark; run it directly:</p>
+ * <pre>
+ * java -cp target/benchmarks.jar pantrypal.bench.StoreStress [processes] [threads] [operations]
+ * </pre>
+ */
+public final class StoreStress {
+    private static final String SHARED_USER = "shared";
+    private static final int COMPACT_EVERY = 250;   // Operations between compactions, per worker
+    private static final int REMOVE_EVERY = 3;      // Every third item is removed again
+    private static final int CLEAR_EVERY = 100;     // Operations between clears of a worker's own notifications
+
+    private StoreStress() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--worker")) {
+            runWorkers(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+
+        int processes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        Path home = Files.createTempDirectory("pantrypal-stress");
+
+        long start = System.nanoTime();
+        List<Process> children = new ArrayList<>();
+        for (int p = 0; p < processes; p++) {
+            children.add(new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-Duser.home=" + home, "-cp", System.getProperty("java.class.path"),
+                    StoreStress.class.getName(), "--worker", "p" + p,
+                    String.valueOf(threads), String.valueOf(operations)).inheritIO().start());
+        }
+        for (Process child : children) {
+            if (child.waitFor() != 0) {
+                throw new IllegalStateException("Worker process failed with exit code " + child.exitValue());
+            }
+        }
+        System.out.printf("%d processes x %d threads x %d operations in %d ms%n", processes, threads, operations,
+                (System.nanoTime() - start) / 1_000_000);
+
+        System.setProperty("user.home", home.toString());
+        System.exit(verify(home, processes, threads, operations) ? 0 : 1);
+    }
+
+    /**
+     * Runs one process's workers, each on its own pantry user.
+     */
+    private static void runWorkers(String process, int threads, int operations) throws Exception {
+        PantryStore store = PantryStore.forFile(pantryPath(Paths.get(System.getProperty("user.home"))));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String userId = process + "-" + t;
+            workers.add(executor.submit(() -> {
+                work(store, userId, operations);
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+        WriteBehindQueue.shared().flush();
+    }
+
+    private static void work(PantryStore store, String userId, int operations) throws IOException {
+        Notifications own = new Notifications(userId);
+        Notifications shared = new Notifications(SHARED_USER);
+        LocalDate expiration = LocalDate.of(2030, 1, 1);
+        for (int i = 0; i < operations; i++) {
+            store.add(userId, "Item " + i, "1", "pcs", expiration, "Stress");
+            if (i % REMOVE_EVERY == REMOVE_EVERY - 1) {
+                store.remove(userId, "Item " + i);
+            }
+            shared.addNotification(userId + " " + i);
+            own.addNotification("Item " + i);
+            if (i % CLEAR_EVERY == CLEAR_EVERY - 1) {
+                own.clearNotifications();
+            }
+            if (i % COMPACT_EVERY == COMPACT_EVERY - 1) {
+                store.compact();
+            }
+        }
+    }
+
+    /**
+     * Re-reads everything from disk in a fresh store and compares it with what the workers did.
+     */
+    private static boolean verify(Path home, int processes, int threads, int operations) throws IOException {
+        PantryStore store = new PantryStore(pantryPath(home));
+        int expectedItems = operations - operations / REMOVE_EVERY;
+        int expectedOwn = operations % CLEAR_EVERY;
+        boolean ok = true;
+        for (int p = 0; p < processes; p++) {
+            for (int t = 0; t < threads; t++) {
+                String userId = "p" + p + "-" + t;
+                int items = store.count(userId);
+                int own = new Notifications(userId).getNotifications().size();
+                if (items != expectedItems || own != expectedOwn) {
+                    System.out.printf("%s: %d items (expected %d), %d notifications (expected %d)%n",
+                            userId, items, expectedItems, own, expectedOwn);
+                    ok = false;
+                }
+            }
+        }
+
+        int expectedShared = processes * threads * operations;
+        int shared = new Notifications(SHARED_USER).getNotifications().size();
+        if (shared != expectedShared) {
+            System.out.printf("%s: %d notifications (expected %d)%n", SHARED_USER, shared, expectedShared);
+            ok = false;
+        }
+        System.out.println(ok ? "OK" : "FAILED; data left in " + home);
+        return ok;
+    }
+
+    private static Path pantryPath(Path home) {
+        return home.resolve("PantryPal").resolve("pantry.csv");
+    }
+}
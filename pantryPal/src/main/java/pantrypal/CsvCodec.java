@@ -0,0 +1,70 @@
+package pantrypal;
+
+/**
+ * Encodes records for PantryPal's comma-separated files.
+ * Fields containing a comma, quote or line break are wrapped in double quotes, with embedded
+ * quotes doubled, so item names and notification text can hold any character.
+ * {@link MappedRecordReader} is the matching decoder.
+ */
+public final class CsvCodec {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private CsvCodec() {
+    }
+
+    /**
+     * Encodes one record, including its line terminator.
+     * Fields are converted with {@code String.valueOf}, so numbers and dates can be passed directly.
+     *
+     * @param fields The fields of the record
+     * @return The encoded line
+     */
+    public static String record(Object... fields) {
+        StringBuilder line = new StringBuilder(16 * fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendField(line, String.valueOf(fields[i]));
+        }
+        return line.append(LINE_SEPARATOR).toString();
+    }
+
+    /**
+     * Appends one field to a record, quoting it if needed.
+     *
+     * @param line  The record being built
+     * @param value The field value
+     */
+    public static void appendField(StringBuilder line, String value) {
+        if (!needsQuoting(value)) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"'); // Escape quotes by doubling them
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    /**
+     * Checks whether a value must be quoted to survive a round trip.
+     *
+     * @param value The field value
+     * @return True if the value contains a comma, quote or line break
+     */
+    public static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,121 @@
+package pantrypal;
+
+import java.awt.*;
+
+/**
+ * Reports any event that keeps the Swing Event Dispatch Thread busy for longer than a threshold.
+ * The watchdog replaces the system event queue and times each dispatch; a daemon thread checks
+ * the running dispatch and prints the event and the EDT's stack once it has run too long.
+ * Time the EDT spends waiting for events, including inside modal dialogs, is not counted.
+ */
+public class EdtWatchdog extends EventQueue {
+    private final long thresholdNanos;
+    private volatile long dispatchStart; // System.nanoTime() when the running dispatch started, 0 if idle
+    private volatile AWTEvent current;   // The event being dispatched
+    private volatile Thread dispatchThread;
+    private volatile long stallCount;
+
+    /**
+     * Constructs a watchdog and starts its checking thread. Call {@link #install()} to start watching.
+     *
+     * @param thresholdMillis How long a dispatch may run before it is reported
+     */
+    public EdtWatchdog(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+
+        Thread watcher = new Thread(this::watch, "edt-watchdog");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Installs a watchdog with the threshold from {@code pantrypal.edtWatchdog.thresholdMillis}.
+     *
+     * @return The installed watchdog, or null in a headless environment
+     */
+    public static EdtWatchdog installDefault() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return null;
+        }
+        EdtWatchdog watchdog = new EdtWatchdog(Long.getLong("pantrypal.edtWatchdog.thresholdMillis", 200));
+        watchdog.install();
+        return watchdog;
+    }
+
+    /**
+     * Replaces the system event queue with this watchdog.
+     */
+    public void install() {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(this);
+    }
+
+    /**
+     * @return The number of stalls reported so far
+     */
+    public long stallCount() {
+        return stallCount;
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        dispatchThread = Thread.currentThread();
+        long outerStart = dispatchStart;
+        AWTEvent outerEvent = current;
+        current = event;
+        dispatchStart = System.nanoTime();
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            // Back in an outer dispatch (a modal loop): it is making progress, so restart its clock
+            current = outerEvent;
+            dispatchStart = outerStart == 0 ? 0 : System.nanoTime();
+        }
+    }
+
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        long outerStart = dispatchStart;
+        dispatchStart = 0; // Waiting for input is not a stall
+        try {
+            return super.getNextEvent();
+        } finally {
+            dispatchStart = outerStart == 0 ? 0 : System.nanoTime();
+        }
+    }
+
+    private void watch() {
+        long reportedStart = 0;
+        long interval = Math.max(1, thresholdNanos / 2_000_000);
+        while (true) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long start = dispatchStart;
+            if (start == 0 || start == reportedStart) {
+                continue;
+            }
+            long blockedNanos = System.nanoTime() - start;
+            if (blockedNanos > thresholdNanos) {
+                reportedStart = start; // Report each stall once
+                stallCount++;
+                report(current, blockedNanos / 1_000_000);
+            }
+        }
+    }
+
+    private void report(AWTEvent event, long blockedMillis) {
+        StringBuilder message = new StringBuilder("EDT blocked for ").append(blockedMillis).append(" ms by ")
+                .append(event != null ? event.getClass().getSimpleName() + " from " + event.getSource().getClass().getSimpleName() : "an event")
+                .append(System.lineSeparator());
+        Thread thread = dispatchThread;
+        if (thread != null) {
+            for (StackTraceElement frame : thread.getStackTrace()) {
+                message.append("\tat ").append(frame).append(System.lineSeparator());
+            }
+        }
+        System.err.print(message);
+    }
+}
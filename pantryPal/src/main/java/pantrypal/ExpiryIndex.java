@@ -0,0 +1,155 @@
+package pantrypal;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Orders pantry items from every user by expiration date.
+ * Items are bucketed by epoch day in a sorted map, so a date-range query costs
+ * O(log n + k) for k matching items instead of a scan of every pantry.
+ * The index is kept up to date incrementally as items are added, updated and removed;
+ * removing an item touches only its own day's bucket, without scanning it.
+ *
+ * <p>Not thread-safe; {@link PantryStore} guards it with its own lock.</p>
+ */
+public class ExpiryIndex {
+    private final TreeMap<Long, Set<Entry>> byDay = new TreeMap<>();      // epoch day -> items expiring that day,
+                                                                          // in insertion order
+    private final Map<String, List<Entry>> byUser = new HashMap<>();      // userId -> that user's items
+    private int size;
+
+    /**
+     * One indexed item and the user it belongs to.
+     * The item is owned by the index and must not be modified by callers.
+     */
+    public static final class Entry {
+        private final String userId;
+        private final PantryItem item;
+
+        private Entry(String userId, PantryItem item) {
+            this.userId = userId;
+            this.item = item;
+        }
+
+        /**
+         * @return The ID of the user who owns the item
+         */
+        public String getUserId() {
+            return userId;
+        }
+
+        /**
+         * @return The indexed item
+         */
+        public PantryItem getItem() {
+            return item;
+        }
+
+        @Override
+        public String toString() {
+            return userId + ":" + item;
+        }
+    }
+
+    /**
+     * Adds an item to the index.
+     *
+     * @param userId The ID of the user who owns the item
+     * @param item   The item; the index keeps its own copy
+     */
+    public void add(String userId, PantryItem item) {
+        Entry entry = new Entry(userId, new PantryItem(item));
+        byDay.computeIfAbsent(item.getExpirationDate().toEpochDay(), day -> new LinkedHashSet<>()).add(entry);
+        byUser.computeIfAbsent(userId, key -> new ArrayList<>()).add(entry);
+        size++;
+    }
+
+    /**
+     * Removes every item with the given name from a user's entries, matching a pantry tombstone.
+     *
+     * @param userId   The ID of the user
+     * @param itemName The name of the items to remove
+     * @return The number of items removed
+     */
+    public int remove(String userId, String itemName) {
+        List<Entry> entries = byUser.get(userId);
+        if (entries == null) {
+            return 0;
+        }
+
+        int removed = 0;
+        for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (entry.item.getItemName().equals(itemName)) {
+                iterator.remove();
+                long day = entry.item.getExpirationDate().toEpochDay();
+                Set<Entry> bucket = byDay.get(day);
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    byDay.remove(day);
+                }
+                removed++;
+            }
+        }
+        if (entries.isEmpty()) {
+            byUser.remove(userId);
+        }
+        size -= removed;
+        return removed;
+    }
+
+    /**
+     * Sets the quantity of every item with the given name in a user's entries, matching a pantry update.
+     *
+     * @param userId   The ID of the user
+     * @param itemName The name of the items to update
+     * @param quantity The new quantity
+     */
+    public void updateQuantity(String userId, String itemName, int quantity) {
+        for (Entry entry : byUser.getOrDefault(userId, List.of())) {
+            if (entry.item.getItemName().equals(itemName)) {
+                entry.item.setQuantity(quantity);
+            }
+        }
+    }
+
+    /**
+     * Returns the items that expire between two dates, inclusive, in expiration order.
+     *
+     * @param from The first expiration date to include
+     * @param to   The last expiration date to include
+     * @return The matching entries; empty if {@code to} is before {@code from}
+     */
+    public List<Entry> expiringBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return new ArrayList<>();
+        }
+        return collect(byDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true));
+    }
+
+    /**
+     * Returns the items that are expired on the given date, in expiration order.
+     * Matches {@link PantryItem#isExpired(LocalDate)}: an item expiring on {@code date} is not yet expired.
+     *
+     * @param date The date to check against
+     * @return The expired entries
+     */
+    public List<Entry> expiredAsOf(LocalDate date) {
+        return collect(byDay.headMap(date.toEpochDay(), false));
+    }
+
+    /**
+     * @return The number of indexed items
+     */
+    public int size() {
+        return size;
+    }
+
+    private static List<Entry> collect(SortedMap<Long, Set<Entry>> days) {
+        List<Entry> entries = new ArrayList<>();
+        for (Set<Entry> bucket : days.values()) {
+            entries.addAll(bucket);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,264 @@
+package pantrypal;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes expiry alerts into users' notifications in the background.
+ * An item is alerted once, when its expiration date comes within {@code pantrypal.expiry.leadDays} days.
+ *
+ * <p>Runs are incremental. The scanner remembers the furthest expiration date it has covered
+ * (its horizon) and each run only asks the {@link ExpiryIndex} for items between the old and new
+ * horizons, plus the short window still ahead of today so items added inside it are not missed.
+ * Alerted items are remembered until they leave that window, so nothing is alerted twice,
+ * even across restarts. Runs happen at every day boundary and every {@code pantrypal.expiry.intervalMinutes}.</p>
+ *
+ * <p>Only one process scans a data directory at a time: the one holding the lock on
+ * {@code expiry-scanner.csv.lock}. Every process tries to take it on each run, so another takes over
+ * when the owner exits, and it reloads the state file when it does, picking up where the last owner stopped.</p>
+ */
+public class ExpiryScanner {
+    private static final String DIRECTORY_NAME = "PantryPal";
+    private static final String PANTRY_FILE_NAME = "pantry.csv";
+    private static final String STATE_FILE_NAME = "expiry-scanner.csv";
+    private static final String HORIZON = "horizon"; // Tag of the state file's first record
+
+    private final PantryStore store;
+    private final Path statePath;    // Horizon and alerted items, kept across restarts
+    private final Path ownerPath;    // Locked by the process running the scanner
+    private final int leadDays;      // How many days before expiring an item is alerted
+    private final Duration interval; // Longest time between runs within a day
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "expiry-scanner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private LocalDate horizon;                           // Latest expiration date already scanned, or null
+    private final Set<AlertKey> alerted = new HashSet<>(); // Items alerted and still in the window
+    private FileChannel ownerChannel; // Open while this process owns the scanner
+    private FileLock ownership;       // Held while this process owns the scanner
+
+    /**
+     * Identifies one alerted item.
+     */
+    private record AlertKey(String userId, String itemName, LocalDate expirationDate) {
+    }
+
+    /**
+     * Constructs a scanner. Call {@link #start()} to begin scheduled runs.
+     *
+     * @param store     The pantry store to scan
+     * @param statePath The file the scanner keeps its progress in
+     * @param leadDays  How many days before its expiration date an item is alerted
+     * @param interval  The longest time between runs
+     * @param clock     The clock that decides what today is
+     */
+    public ExpiryScanner(PantryStore store, Path statePath, int leadDays, Duration interval, Clock clock) {
+        this.store = store;
+        this.statePath = statePath;
+        this.ownerPath = statePath.resolveSibling(statePath.getFileName() + ".lock");
+        this.leadDays = leadDays;
+        this.interval = interval;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts the scanner for the default PantryPal data directory, configured by system properties.
+     *
+     * @return The running scanner
+     */
+    public static ExpiryScanner startDefault() {
+        Path directory = Paths.get(System.getProperty("user.home"), DIRECTORY_NAME);
+        ExpiryScanner scanner = new ExpiryScanner(PantryStore.forFile(directory.resolve(PANTRY_FILE_NAME)),
+                directory.resolve(STATE_FILE_NAME),
+                Integer.getInteger("pantrypal.expiry.leadDays", 2),
+                Duration.ofMinutes(Long.getLong("pantrypal.expiry.intervalMinutes", 60)),
+                Clock.systemDefaultZone());
+        scanner.start();
+        return scanner;
+    }
+
+    /**
+     * Runs a scan now and schedules the following ones.
+     */
+    public void start() {
+        scheduler.execute(this::runAndReschedule);
+    }
+
+    /**
+     * Stops scheduled runs and hands the scanner to another process. A run in progress is allowed to finish.
+     */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            releaseOwnership();
+        } catch (IOException e) {
+            System.err.println("Error releasing the expiry scanner: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Scans for items that came within the alert window since the last run and notifies their owners.
+     *
+     * Does nothing unless this process owns the scanner.
+     *
+     * @return The number of alerts written
+     * @throws IOException If the pantry cannot be read or the alerts cannot be written
+     */
+    public synchronized int runOnce() throws IOException {
+        if (!takeOwnership()) {
+            return 0; // Another process is scanning
+        }
+        LocalDate today = LocalDate.now(clock);
+        LocalDate newHorizon = today.plusDays(leadDays);
+
+        // Items past the old horizon are new to the window; items from today on may have been added since.
+        // A first run starts at today, so items that expired before the scanner existed are not alerted.
+        LocalDate from = horizon == null || !horizon.isBefore(today) ? today : horizon.plusDays(1);
+        if (horizon != null && horizon.isAfter(newHorizon)) {
+            newHorizon = horizon; // The clock went back; never shrink what was covered
+        }
+
+        long firstLiveDay = from.toEpochDay();
+        alerted.removeIf(key -> key.expirationDate().toEpochDay() < firstLiveDay); // These can no longer repeat
+
+        Map<String, List<String>> messages = new LinkedHashMap<>(); // userId -> alerts, written per user
+        for (ExpiryIndex.Entry entry : store.expiringBetween(from, newHorizon)) {
+            PantryItem item = entry.getItem();
+            if (alerted.add(new AlertKey(entry.getUserId(), item.getItemName(), item.getExpirationDate()))) {
+                messages.computeIfAbsent(entry.getUserId(), key -> new ArrayList<>()).add(message(item, today));
+            }
+        }
+
+        int count = 0;
+        for (Map.Entry<String, List<String>> user : messages.entrySet()) {
+            Notifications notifications = new Notifications(user.getKey());
+            for (String message : user.getValue()) {
+                notifications.addNotification(message); // Queued; the whole run is written as one batch
+                count++;
+            }
+        }
+        for (String userId : messages.keySet()) {
+            WriteBehindQueue.shared().flush(Notifications.getSegmentPath(userId)); // Only the first call writes
+        }
+
+        horizon = newHorizon;
+        saveState();
+        return count;
+    }
+
+    /**
+     * Makes this process the scanner's owner if no other process is. A new owner reloads the state,
+     * since the previous owner may have moved it on.
+     *
+     * @return Whether this process owns the scanner
+     */
+    private boolean takeOwnership() throws IOException {
+        if (ownership != null && ownership.isValid()) {
+            return true;
+        }
+        if (scheduler.isShutdown()) {
+            return false; // Stopped; leave the scanner to the other processes
+        }
+        if (ownerChannel == null || !ownerChannel.isOpen()) {
+            Files.createDirectories(ownerPath.getParent());
+            ownerChannel = FileChannel.open(ownerPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        try {
+            ownership = ownerChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            ownership = null; // Another scanner in this JVM owns it
+        }
+        if (ownership == null) {
+            return false;
+        }
+        horizon = null;
+        alerted.clear();
+        loadState();
+        return true;
+    }
+
+    private synchronized void releaseOwnership() throws IOException {
+        ownership = null;
+        if (ownerChannel != null) {
+            ownerChannel.close(); // Releases the lock
+            ownerChannel = null;
+        }
+    }
+
+    private void runAndReschedule() {
+        try {
+            runOnce();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error scanning for expiring items: " + e.getMessage());
+        }
+
+        // Run again at the next day boundary, or sooner if the interval is shorter
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        Duration untilMidnight = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay(now.getZone()));
+        Duration delay = untilMidnight.compareTo(interval) < 0 ? untilMidnight : interval;
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::runAndReschedule, Math.max(1, delay.toMillis()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static String message(PantryItem item, LocalDate today) {
+        LocalDate date = item.getExpirationDate();
+        if (date.isBefore(today)) {
+            return item.getItemName() + " expired on " + date;
+        }
+        return date.equals(today) ? item.getItemName() + " expires today"
+                : item.getItemName() + " expires on " + date;
+    }
+
+    /**
+     * Reads the horizon and alerted items left by the previous run.
+     * The state file holds a horizon record followed by one userId,itemName,expirationDate record per alert.
+     */
+    private void loadState() throws IOException {
+        try (MappedRecordReader reader = MappedRecordReader.openIfExists(statePath)) {
+            if (reader == null) {
+                return;
+            }
+            reader.forEachRecord(0, reader.size(), record -> {
+                if (record.fieldCount() == 2 && record.field(0).equals(HORIZON)) {
+                    horizon = record.dateField(1);
+                } else if (record.fieldCount() == 3) {
+                    alerted.add(new AlertKey(record.field(0), record.field(1), record.dateField(2)));
+                }
+            });
+        } catch (RuntimeException e) {
+            System.err.println("Ignoring unreadable expiry scanner state: " + e.getMessage());
+            horizon = null;
+            alerted.clear();
+        }
+    }
+
+    private void saveState() throws IOException {
+        StringBuilder state = new StringBuilder(CsvCodec.record(HORIZON, horizon));
+        for (AlertKey key : alerted) {
+            state.append(CsvCodec.record(key.userId(), key.itemName(), key.expirationDate()));
+        }
+
+        // Replace the file whole, so a crash leaves either the old state or the new one. The temp file is
+        // unique, so a second process saving at the same time cannot write into ours.
+        Files.createDirectories(statePath.getParent());
+        Path tempPath = Files.createTempFile(statePath.getParent(), statePath.getFileName() + ".", ".tmp");
+        try {
+            Files.writeString(tempPath, state, StandardCharsets.UTF_8);
+            Files.move(tempPath, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+}
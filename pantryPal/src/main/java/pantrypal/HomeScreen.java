@@ -3,6 +3,7 @@ package pantrypal;
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -73,13 +74,20 @@ public class HomeScreen extends JFrame {
         notificationsButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                // Retrieve notifications from PantryApp
-                List<String> notifications = app.getNotifications();
+                // Read the user's saved notifications off the EDT, then add this session's
+                notificationsButton.setEnabled(false);
+                PantryService.onEdt(app.getService().getNotifications(app.getCurrentUser()), saved -> {
+                    List<String> notifications = new ArrayList<>(saved);
+                    notifications.addAll(app.getNotifications());
 
-                // Show NotificationsScreen when clicked and pass the notifications
-                NotificationsScreen notificationsScreen = new NotificationsScreen(app, notifications);
-                notificationsScreen.setVisible(true);
-                dispose();  // Close HomeScreen
+                    // Show NotificationsScreen when clicked and pass the notifications
+                    NotificationsScreen notificationsScreen = new NotificationsScreen(app, notifications);
+                    notificationsScreen.setVisible(true);
+                    dispose();  // Close HomeScreen
+                }, error -> {
+                    notificationsButton.setEnabled(true);
+                    JOptionPane.showMessageDialog(HomeScreen.this, "Could not load notifications: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                });
             }
         });
 
@@ -97,6 +105,16 @@ public class HomeScreen extends JFrame {
             }
         });
 
+        // Pantry summary, read from the running totals off the EDT
+        JLabel summaryLabel = new JLabel("", SwingConstants.CENTER);
+        summaryLabel.setBounds(20, 310, 360, 40);
+        add(summaryLabel);
+        PantryService.onEdt(app.getService().pantryOverview(app.getCurrentUser()), overview ->
+                summaryLabel.setText("<html><center>" + overview.getTotal().getCount() + " items in your pantry<br>"
+                        + overview.getExpired().getCount() + " expired, "
+                        + overview.getExpiringThisWeek().getCount() + " expiring this week</center></html>"),
+                error -> summaryLabel.setText("Pantry summary unavailable"));
+
         // Set the HomeScreen visible
         setVisible(true);
     }
@@ -0,0 +1,367 @@
+package pantrypal;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Suggests item names as a user types, from the names in their pantry and on their shopping list.
+ *
+ * <p>Each user's names are kept in a sorted map from every word start of the lower-cased name to
+ * the names it came from, so "chee" finds both "Cheese" and "Cheddar cheese". Completing a prefix
+ * is a range of that map and costs O(log n + k). Typo-tolerant matching walks the same map as a
+ * trie below the query's first letter, keeping one edit-distance row per level and pruning branches
+ * that are already more than {@value #MAX_TYPOS} edits (insertions, deletions, substitutions or swaps
+ * of neighbouring letters) away, so it touches a small part of the map however many names there are.</p>
+ *
+ * <p>The index listens to its {@link PantryStore} and to shopping list saves and follows every change
+ * by name. A user's names are built from one pass over their pantry and shopping list the first time
+ * they are needed.</p>
+ */
+public class ItemNameIndex implements PantryStore.Listener, ShoppingListLog.Listener {
+    private static final int MAX_TYPOS = 2;
+    private static final int MIN_TYPO_LENGTH = 3;    // Shorter queries match too much to allow a typo
+    private static final int ONE_TYPO_LENGTH = 5;    // Queries up to this long allow only one typo
+    private static final LatencyHistogram SUGGEST_LATENCY = Metrics.histogram("names.suggest");
+    private static final Map<PantryStore, ItemNameIndex> indexes = new HashMap<>();
+
+    private final PantryStore store;
+    private final Map<String, UserNames> users = new HashMap<>(); // userId -> that user's names
+
+    /**
+     * One user's item names and their search keys.
+     */
+    private static final class UserNames {
+        private final Map<String, Name> names = new HashMap<>();           // Item name -> where it is in use
+        private final Map<String, Name> shopping = new HashMap<>();        // Lower-cased shopping list name -> name
+        private final TreeMap<String, List<Name>> keys = new TreeMap<>();  // Lower-cased name from each word start -> names
+    }
+
+    /**
+     * An item name and what keeps it searchable.
+     */
+    private static final class Name {
+        private final String itemName;
+        private int pantryItems;          // Items in the pantry with this name
+        private boolean onShoppingList;
+
+        private Name(String itemName) {
+            this.itemName = itemName;
+        }
+
+        private boolean inUse() {
+            return pantryItems > 0 || onShoppingList;
+        }
+    }
+
+    private ItemNameIndex(PantryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns the index for a store, creating it and starting to listen to the store and to shopping
+     * list saves on first use.
+     *
+     * @param store The store holding the pantries
+     * @return The index listening to that store
+     */
+    public static synchronized ItemNameIndex forStore(PantryStore store) {
+        return indexes.computeIfAbsent(store, key -> {
+            ItemNameIndex index = new ItemNameIndex(key);
+            key.addListener(index);
+            ShoppingListLog.addListener(index);
+            return index;
+        });
+    }
+
+    /**
+     * Returns a user's item names with a word starting with the given text, ignoring case.
+     *
+     * @param userId The ID of the user
+     * @param prefix The text typed so far
+     * @param limit  The most names to return
+     * @return Matching names, ordered by the matching word
+     * @throws IOException If the user's names have to be loaded and cannot be read
+     */
+    public List<String> complete(String userId, String prefix, int limit) throws IOException {
+        String key = normalize(prefix);
+        synchronized (store) { // Store lock first, as for listener calls
+            synchronized (this) {
+                Set<Name> found = new LinkedHashSet<>();
+                if (!key.isEmpty()) {
+                    collect(state(userId).keys, key, found, limit);
+                }
+                return itemNames(found);
+            }
+        }
+    }
+
+    /**
+     * Returns a user's item names that match what was typed: first the names {@link #complete} finds,
+     * then names with a word that starts within one typo of the text (two for text longer than
+     * {@value #ONE_TYPO_LENGTH} characters), closest first. The first letter must match. Text shorter than
+     * {@value #MIN_TYPO_LENGTH} characters is only completed.
+     *
+     * @param userId The ID of the user
+     * @param query  The text typed so far
+     * @param limit  The most names to return
+     * @return Matching names, best first
+     * @throws IOException If the user's names have to be loaded and cannot be read
+     */
+    public List<String> suggest(String userId, String query, int limit) throws IOException {
+        String key = normalize(query);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        try {
+            synchronized (store) {
+                synchronized (this) {
+                    Set<Name> found = new LinkedHashSet<>();
+                    TreeMap<String, List<Name>> keys = state(userId).keys;
+                    collect(keys, key, found, limit);
+                    if (key.length() >= MIN_TYPO_LENGTH) {
+                        int maxTypos = key.length() <= ONE_TYPO_LENGTH ? 1 : MAX_TYPOS;
+                        // Typos are only looked for after the first letter, which people rarely get wrong,
+                        // so the walk stays in one branch of the map. The rows give the distances from each
+                        // start of the query to "" and to its own first letter
+                        int[] empty = new int[key.length() + 1];
+                        int[] firstLetter = new int[key.length() + 1];
+                        for (int i = 0; i <= key.length(); i++) {
+                            empty[i] = i;
+                            firstLetter[i] = Math.abs(i - 1);
+                        }
+                        // One walk per distance, so closer names come first and a full list stops early
+                        for (int typos = 1; typos <= maxTypos && found.size() < limit; typos++) {
+                            walk(keys, key, key.substring(0, 1), firstLetter, empty, typos, found, limit);
+                        }
+                    }
+                    return itemNames(found);
+                }
+            }
+        } finally {
+            SUGGEST_LATENCY.recordSince(start);
+        }
+    }
+
+    @Override
+    public synchronized void itemsAdded(String userId, List<PantryItem> items) {
+        UserNames state = users.get(userId);
+        if (state == null) {
+            return; // Built from the store when first needed
+        }
+        for (PantryItem item : items) {
+            Name name = name(state, item.getItemName());
+            if (name.pantryItems++ == 0 && !name.onShoppingList) {
+                addKeys(state, name);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void itemsRemoved(String userId, String itemName) {
+        UserNames state = users.get(userId);
+        Name name = state != null ? state.names.get(itemName) : null;
+        if (name != null && name.pantryItems > 0) {
+            name.pantryItems = 0;
+            release(state, name);
+        }
+    }
+
+    @Override
+    public void quantityChanged(String userId, String itemName, int quantity) {
+        // Items stay in the pantry at any quantity, so their names stay searchable
+    }
+
+    @Override
+    public synchronized void reset() {
+        users.clear(); // Rebuilt from the store when next needed
+    }
+
+    @Override
+    public synchronized void saved(String userId, Map<String, ShoppingListItem> changes, boolean complete) {
+        UserNames state = users.get(userId);
+        if (state == null) {
+            return; // Built from the shopping list when first needed
+        }
+        if (complete) {
+            for (Name name : new ArrayList<>(state.shopping.values())) {
+                if (!changes.containsKey(name.itemName)) {
+                    removeFromShoppingList(state, name.itemName);
+                }
+            }
+        }
+        for (Map.Entry<String, ShoppingListItem> change : changes.entrySet()) {
+            if (change.getValue() != null) {
+                addToShoppingList(state, change.getValue().getItemName());
+            } else {
+                removeFromShoppingList(state, change.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns a user's names, reading their pantry and shopping list on first use.
+     * Must be called with the store lock held, so no change slips in between the read and the listener.
+     */
+    private UserNames state(String userId) throws IOException {
+        store.refresh(); // Resets the names if another process changed the pantry
+        UserNames state = users.get(userId);
+        if (state != null) {
+            return state;
+        }
+
+        UserNames loaded = new UserNames();
+        store.forEachItem(userId, item -> name(loaded, item.getItemName()).pantryItems++);
+        for (ShoppingListItem item : ShoppingListLog.open(userId).getList().listItems()) {
+            Name name = name(loaded, item.getItemName());
+            name.onShoppingList = true;
+            loaded.shopping.put(normalize(item.getItemName()), name);
+        }
+        for (Name name : loaded.names.values()) {
+            addKeys(loaded, name);
+        }
+        users.put(userId, loaded);
+        return loaded;
+    }
+
+    private static Name name(UserNames state, String itemName) {
+        return state.names.computeIfAbsent(itemName, Name::new);
+    }
+
+    private static void addToShoppingList(UserNames state, String itemName) {
+        String key = normalize(itemName);
+        Name current = state.shopping.get(key);
+        if (current != null && current.itemName.equals(itemName)) {
+            return;
+        }
+        if (current != null) {
+            removeFromShoppingList(state, itemName); // Renamed by case; shopping list names ignore it
+        }
+        Name name = name(state, itemName);
+        state.shopping.put(key, name);
+        name.onShoppingList = true;
+        if (name.pantryItems == 0) {
+            addKeys(state, name);
+        }
+    }
+
+    private static void removeFromShoppingList(UserNames state, String itemName) {
+        Name name = state.shopping.remove(normalize(itemName));
+        if (name != null) {
+            name.onShoppingList = false;
+            release(state, name);
+        }
+    }
+
+    /**
+     * Drops a name that is no longer in use from the search keys.
+     */
+    private static void release(UserNames state, Name name) {
+        if (name.inUse()) {
+            return;
+        }
+        state.names.remove(name.itemName);
+        for (String key : keys(name.itemName)) {
+            List<Name> names = state.keys.get(key);
+            if (names != null && names.remove(name) && names.isEmpty()) {
+                state.keys.remove(key);
+            }
+        }
+    }
+
+    private static void addKeys(UserNames state, Name name) {
+        List<String> keys = keys(name.itemName);
+        for (int i = 0; i < keys.size(); i++) {
+            List<Name> names = state.keys.computeIfAbsent(keys.get(i), k -> new ArrayList<>(1));
+            if (i == 0) {
+                names.add(0, name); // Names starting with the key come before names with it as a later word
+            } else {
+                names.add(name);
+            }
+        }
+    }
+
+    /**
+     * Returns the lower-cased name from the start of each of its words.
+     */
+    private static List<String> keys(String itemName) {
+        String normalized = normalize(itemName);
+        List<String> keys = new ArrayList<>(2);
+        for (int i = 0; i < normalized.length(); i++) {
+            if (Character.isLetterOrDigit(normalized.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(normalized.charAt(i - 1)))) {
+                keys.add(normalized.substring(i));
+            }
+        }
+        if (keys.isEmpty() && !normalized.isEmpty()) {
+            keys.add(normalized); // A name of only punctuation still completes
+        }
+        return keys;
+    }
+
+    private static String normalize(String text) {
+        return text.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds the names of every key starting with a prefix, in key order, until there are enough.
+     */
+    private static void collect(TreeMap<String, List<Name>> keys, String prefix, Set<Name> found, int limit) {
+        for (List<Name> names : keys.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            for (Name name : names) {
+                if (found.size() >= limit) {
+                    return;
+                }
+                found.add(name);
+            }
+        }
+    }
+
+    /**
+     * Visits the children of one node of the trie the sorted keys form: the keys starting with
+     * {@code prefix}, grouped by their next character. {@code row[i]} is the edit distance between
+     * the first i characters of the query and the prefix, and {@code previousRow} the same for the
+     * prefix without its last character, for spotting swapped letters. A child whose row ends within
+     * {@code typos} edits matches the query with everything below it; one whose whole row is further
+     * off than that cannot lead to a match.
+     */
+    private static void walk(TreeMap<String, List<Name>> keys, String query, String prefix, int[] row,
+                             int[] previousRow, int typos, Set<Name> found, int limit) {
+        int depth = prefix.length();
+        String next = keys.higherKey(prefix);
+        while (next != null && next.startsWith(prefix) && found.size() < limit) {
+            char c = next.charAt(depth);
+            int[] childRow = new int[row.length];
+            childRow[0] = depth + 1;
+            int best = childRow[0];
+            for (int i = 1; i < row.length; i++) {
+                char q = query.charAt(i - 1);
+                int distance = Math.min(Math.min(row[i] + 1, childRow[i - 1] + 1), row[i - 1] + (q == c ? 0 : 1));
+                if (previousRow != null && i > 1 && q == prefix.charAt(depth - 1) && query.charAt(i - 2) == c) {
+                    distance = Math.min(distance, previousRow[i - 2] + 1);
+                }
+                childRow[i] = distance;
+                best = Math.min(best, distance);
+            }
+
+            String child = prefix + c;
+            if (childRow[row.length - 1] <= typos) {
+                collect(keys, child, found, limit);
+            } else if (best <= typos) {
+                walk(keys, query, child, childRow, row, typos, found, limit);
+            }
+            if (c == Character.MAX_VALUE) {
+                break;
+            }
+            next = keys.ceilingKey(prefix + (char) (c + 1));
+        }
+    }
+
+    private static List<String> itemNames(Set<Name> found) {
+        List<String> itemNames = new ArrayList<>(found.size());
+        for (Name name : found) {
+            itemNames.add(name.itemName);
+        }
+        return itemNames;
+    }
+}
@@ -0,0 +1,200 @@
+package pantrypal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The small amount of JSON PantryPal speaks: flat objects of strings and numbers, as used by
+ * {@link PantryServer} requests and responses and by pantry import files. Nested objects and
+ * arrays inside an object are not supported.
+ */
+public final class Json {
+    private Json() {
+    }
+
+    /**
+     * Parses one flat JSON object. Strings are unescaped; numbers and booleans are kept as their
+     * text, and nulls become null values.
+     *
+     * @param json The text of the object; surrounding whitespace is allowed
+     * @return The fields by name
+     * @throws IllegalArgumentException If the text is not a flat JSON object
+     */
+    public static Map<String, String> parseObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] position = {skipWhitespace(json, 0)};
+        expect(json, position, '{');
+        if (peek(json, position) == '}') {
+            position[0]++;
+            expectEnd(json, position);
+            return fields;
+        }
+        while (true) {
+            expect(json, position, '"');
+            String name = readString(json, position);
+            expect(json, position, ':');
+            String value;
+            char first = peek(json, position);
+            if (first == '"') {
+                position[0]++;
+                value = readString(json, position);
+            } else if (first == '{' || first == '[') {
+                throw new IllegalArgumentException("Nested JSON values are not supported: " + name);
+            } else {
+                int start = position[0];
+                while (position[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(position[0])) < 0) {
+                    position[0]++;
+                }
+                value = json.substring(start, position[0]);
+                value = value.equals("null") ? null : value;
+            }
+            fields.put(name, value);
+            if (peek(json, position) == ',') {
+                position[0]++;
+                continue;
+            }
+            expect(json, position, '}');
+            expectEnd(json, position);
+            return fields;
+        }
+    }
+
+    /**
+     * Builds a JSON object from name, value pairs. Numbers stay bare, nulls become null and
+     * everything else is written as a string.
+     *
+     * @param namesAndValues Alternating field names and values
+     * @return The JSON text
+     */
+    public static String object(Object... namesAndValues) {
+        StringBuilder json = new StringBuilder();
+        appendObject(json, namesAndValues);
+        return json.toString();
+    }
+
+    /**
+     * Appends a JSON object built from name, value pairs, as {@link #object} does, without
+     * creating a String for it.
+     *
+     * @param json           The text to append to
+     * @param namesAndValues Alternating field names and values
+     */
+    public static void appendObject(StringBuilder json, Object... namesAndValues) {
+        json.append('{');
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                json.append(',');
+            }
+            quote(namesAndValues[i].toString(), json);
+            json.append(':');
+            Object value = namesAndValues[i + 1];
+            if (value == null) {
+                json.append("null");
+            } else if (value instanceof Number) {
+                json.append(value);
+            } else {
+                quote(value.toString(), json);
+            }
+        }
+        json.append('}');
+    }
+
+    /**
+     * Appends a string as a quoted, escaped JSON string.
+     *
+     * @param value The string
+     * @param json  The text to append to
+     */
+    public static void quote(String value, StringBuilder json) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Reads a string whose opening quote has been consumed, up to and past its closing quote.
+     */
+    private static String readString(String json, int[] position) {
+        StringBuilder value = new StringBuilder();
+        int i = position[0];
+        while (i < json.length()) {
+            char c = json.charAt(i++);
+            if (c == '"') {
+                position[0] = i;
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= json.length()) {
+                break;
+            }
+            char escaped = json.charAt(i++);
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    if (i + 4 > json.length()) {
+                        throw new IllegalArgumentException("Malformed JSON escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Malformed JSON escape");
+                    }
+                    i += 4;
+                }
+                default -> value.append(escaped); // \" \\ \/
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string");
+    }
+
+    private static char peek(String json, int[] position) {
+        position[0] = skipWhitespace(json, position[0]);
+        if (position[0] >= json.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        return json.charAt(position[0]);
+    }
+
+    private static void expect(String json, int[] position, char expected) {
+        if (peek(json, position) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' in JSON at " + position[0]);
+        }
+        position[0]++;
+    }
+
+    private static void expectEnd(String json, int[] position) {
+        if (skipWhitespace(json, position[0]) < json.length()) {
+            throw new IllegalArgumentException("Unexpected text after JSON object at " + position[0]);
+        }
+    }
+
+    private static int skipWhitespace(String json, int position) {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
@@ -67,18 +67,24 @@ public class LoginScreen extends JFrame {
                 String username = usernameField.getText();
                 String password = new String(passwordField.getPassword());
                 
-                try {
-                    // Attempt login with PantryApp
-                    app.loginUser(username, password);
+                // Hash the password off the EDT, then come back to update the screen
+                loginButton.setEnabled(false);
+                PantryService.onEdt(app.getService().login(username, password), user -> {
                     JOptionPane.showMessageDialog(LoginScreen.this, "Login successful!");
-                    
+
                     // Navigate to HomeScreen after successful login
                     HomeScreen homeScreen = new HomeScreen(app);
                     homeScreen.setVisible(true);
                     dispose(); // Close the login screen
-                } catch (IllegalArgumentException ex) {
-                    JOptionPane.showMessageDialog(LoginScreen.this, "Invalid username or password.", "Error", JOptionPane.ERROR_MESSAGE);
-                }
+                }, error -> {
+                    loginButton.setEnabled(true);
+                    if (error instanceof IllegalArgumentException) {
+                        JOptionPane.showMessageDialog(LoginScreen.this, "Invalid username or password.", "Error", JOptionPane.ERROR_MESSAGE);
+                    } else {
+                        // Storage problems are not the user's fault; say what went wrong
+                        JOptionPane.showMessageDialog(LoginScreen.this, "Could not log in: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
             }
         });
 
@@ -0,0 +1,387 @@
+package pantrypal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Reads comma-separated record files through a memory-mapped view.
+ * Record and field boundaries are found by scanning the mapped bytes, so callers can
+ * compare fields against raw bytes and only build Strings or LocalDates for the records they keep.
+ *
+ * <p>This is the decoder for {@link CsvCodec}: a field that starts with a double quote runs to
+ * the matching closing quote, may contain commas and line breaks, and has doubled quotes unescaped.
+ * A quote in the middle of an unquoted field is ordinary text, as older files were written without quoting.</p>
+ */
+public class MappedRecordReader implements Closeable {
+    private static final long WINDOW_SIZE = 1L << 28; // Map large files 256 MB at a time
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;          // False when reading through a caller's channel
+    private final long size;
+    private final Record record = new Record(); // Reused for every record handed to callers
+    private MappedByteBuffer window;            // The currently mapped part of the file
+    private long windowStart;
+    private byte[] scratch = new byte[256];     // Reused buffer for decoding fields
+
+    /**
+     * Handles one record during a scan. The record is only valid until the handler returns.
+     */
+    public interface RecordHandler {
+        void record(Record record) throws IOException;
+    }
+
+    /**
+     * Opens a reader over the whole file.
+     *
+     * @param path The file to read
+     * @throws IOException If the file cannot be opened
+     */
+    public MappedRecordReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.ownsChannel = true;
+        this.size = channel.size();
+    }
+
+    /**
+     * Opens a reader over a channel the caller keeps open, such as one pinned to a file that may
+     * be replaced on disk. Closing the reader leaves the channel open.
+     *
+     * @param channel An open channel to read
+     * @throws IOException If the channel's size cannot be read
+     */
+    public MappedRecordReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.ownsChannel = false;
+        this.size = channel.size();
+    }
+
+    /**
+     * Returns the size of the file when it was opened.
+     *
+     * @return The number of readable bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Calls the handler for every complete record between two offsets.
+     *
+     * @param from    The offset of the first record
+     * @param to      The offset to stop at
+     * @param handler The handler to call for each record
+     * @return The offset just past the last complete record; a trailing partial line is left unread
+     * @throws IOException If an I/O error occurs
+     */
+    public long forEachRecord(long from, long to, RecordHandler handler) throws IOException {
+        long position = from;
+        to = Math.min(to, size);
+        while (position < to) {
+            long end = record.scan(position, to, false);
+            if (end < 0) {
+                break; // Partial line at the end of the range
+            }
+            if (end > position) {
+                handler.record(record);
+            }
+            position = end + 1;
+        }
+        return position;
+    }
+
+    /**
+     * Calls the handler for every record from an offset to the end of the file, including a last
+     * record that has no line terminator, as files written by other programs often do.
+     *
+     * @param from    The offset of the first record
+     * @param handler The handler to call for each record
+     * @throws IOException If an I/O error occurs
+     */
+    public void forEachRecordToEnd(long from, RecordHandler handler) throws IOException {
+        long position = forEachRecord(from, size, handler);
+        if (position < size && record.scan(position, size, true) > position) {
+            handler.record(record);
+        }
+    }
+
+    /**
+     * Returns the record starting at the given offset.
+     * The returned record is reused by the next call on this reader.
+     *
+     * @param offset The offset of the record
+     * @return The record, or null if no complete record starts there
+     * @throws IOException If an I/O error occurs
+     */
+    public Record recordAt(long offset) throws IOException {
+        return record.scan(offset, size, false) < 0 ? null : record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    private byte byteAt(long position) throws IOException {
+        if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+        }
+        return window.get((int) (position - windowStart));
+    }
+
+    private byte[] scratch(int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    /**
+     * A view of one record in the mapped file. Field accessors decode lazily.
+     */
+    public final class Record {
+        private long start;
+        private long end;                        // Offset just past the last field
+        private long lineEnd;                    // Offset of the terminating newline
+        private long[] fieldStarts = new long[8];
+        private boolean[] quoted = new boolean[8];
+        private int fieldCount;
+
+        /**
+         * Finds the fields of the record starting at {@code from}.
+         *
+         * @param atEnd True if {@code to} is the end of the file and may end the record without a newline
+         * @return The offset of the terminating newline, or -1 if the record does not end before {@code to}
+         */
+        private long scan(long from, long to, boolean atEnd) throws IOException {
+            start = from;
+            fieldCount = 0;
+            addField(from, from < to && byteAt(from) == '"');
+
+            boolean inQuotes = fieldCount > 0 && quoted[0];
+            long position = inQuotes ? from + 1 : from;
+            for (; position < to; position++) {
+                byte b = byteAt(position);
+                if (inQuotes) {
+                    if (b == '"') {
+                        if (position + 1 < to && byteAt(position + 1) == '"') {
+                            position++; // Escaped quote
+                        } else {
+                            inQuotes = false;
+                        }
+                    }
+                } else if (b == ',') {
+                    boolean opensQuote = position + 1 < to && byteAt(position + 1) == '"';
+                    addField(position + 1, opensQuote);
+                    if (opensQuote) {
+                        inQuotes = true;
+                        position++;
+                    }
+                } else if (b == '\n') {
+                    lineEnd = position;
+                    end = position > from && byteAt(position - 1) == '\r' ? position - 1 : position;
+                    return position;
+                }
+            }
+            if (atEnd) {
+                lineEnd = to;
+                end = to > from && byteAt(to - 1) == '\r' ? to - 1 : to;
+                return to;
+            }
+            return -1;
+        }
+
+        private void addField(long fieldStart, boolean isQuoted) {
+            if (fieldCount == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+                quoted = Arrays.copyOf(quoted, fieldCount * 2);
+            }
+            quoted[fieldCount] = isQuoted;
+            fieldStarts[fieldCount++] = fieldStart;
+        }
+
+        private long fieldEnd(int field) {
+            return field + 1 < fieldCount ? fieldStarts[field + 1] - 1 : end;
+        }
+
+        /**
+         * @return The offset of this record in the file
+         */
+        public long offset() {
+            return start;
+        }
+
+        /**
+         * @return The length of this record in bytes, without its line terminator
+         */
+        public long length() {
+            return lineEnd - start;
+        }
+
+        /**
+         * @return The number of comma-separated fields in this record
+         */
+        public int fieldCount() {
+            return fieldCount;
+        }
+
+        /**
+         * Compares a field with the given bytes. Unquoted fields are compared without decoding.
+         *
+         * @param field The index of the field
+         * @param value The bytes to compare with
+         * @return True if the field holds exactly those bytes
+         */
+        public boolean fieldEquals(int field, byte[] value) throws IOException {
+            if (quoted[field]) {
+                return Arrays.equals(field(field).getBytes(StandardCharsets.UTF_8), value);
+            }
+            long fieldStart = fieldStarts[field];
+            if (fieldEnd(field) - fieldStart != value.length) {
+                return false;
+            }
+            for (int i = 0; i < value.length; i++) {
+                if (byteAt(fieldStart + i) != value[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Decodes a field as a String, removing quoting.
+         *
+         * @param field The index of the field
+         * @return The field's text
+         */
+        public String field(int field) throws IOException {
+            long from = fieldStarts[field];
+            long to = fieldEnd(field);
+            if (!quoted[field]) {
+                return decode(from, to);
+            }
+
+            // Drop the surrounding quotes and collapse doubled quotes
+            byte[] bytes = scratch((int) (to - from));
+            int length = 0;
+            for (long position = from + 1; position < to; position++) {
+                byte b = byteAt(position);
+                if (b == '"') {
+                    if (position + 1 < to && byteAt(position + 1) == '"') {
+                        position++;
+                    } else {
+                        continue; // Closing quote
+                    }
+                }
+                bytes[length++] = b;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Decodes fields {@code from} to {@code to} (exclusive) as they appear in the file, commas included.
+         * Used to recover text that older versions wrote without quoting.
+         *
+         * @param from The index of the first field
+         * @param to   The index after the last field
+         * @return The raw text of those fields
+         */
+        public String rawFields(int from, int to) throws IOException {
+            return decode(fieldStarts[from], fieldEnd(to - 1));
+        }
+
+        /**
+         * Parses a field as a decimal int without building a String.
+         *
+         * @param field The index of the field
+         * @return The parsed value
+         * @throws NumberFormatException If the field is not a valid int
+         */
+        public int intField(int field) throws IOException {
+            if (quoted[field]) {
+                return Integer.parseInt(field(field));
+            }
+            long position = fieldStarts[field];
+            long fieldEnd = fieldEnd(field);
+            boolean negative = position < fieldEnd && byteAt(position) == '-';
+            if (negative) {
+                position++;
+            }
+            if (position == fieldEnd) {
+                throw new NumberFormatException("Empty number in record at offset " + start);
+            }
+            long value = 0;
+            for (; position < fieldEnd; position++) {
+                int digit = byteAt(position) - '0';
+                if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+                    throw new NumberFormatException("Invalid number in record at offset " + start);
+                }
+                value = value * 10 + digit;
+            }
+            value = negative ? -value : value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Number out of range in record at offset " + start);
+            }
+            return (int) value;
+        }
+
+        /**
+         * Parses a field in ISO yyyy-MM-dd form as a LocalDate without building a String.
+         *
+         * @param field The index of the field
+         * @return The parsed date
+         * @throws java.time.DateTimeException If the field is not a valid date
+         */
+        public LocalDate dateField(int field) throws IOException {
+            long position = fieldStarts[field];
+            if (quoted[field] || fieldEnd(field) - position != 10
+                    || byteAt(position + 4) != '-' || byteAt(position + 7) != '-') {
+                return LocalDate.parse(field(field)); // Let the parser report the problem
+            }
+            return LocalDate.of(digits(position, 4), digits(position + 5, 2), digits(position + 8, 2));
+        }
+
+        private int digits(long position, int count) throws IOException {
+            int value = 0;
+            for (int i = 0; i < count; i++) {
+                int digit = byteAt(position + i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new java.time.DateTimeException("Invalid date in record at offset " + start);
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private String decode(long from, long to) throws IOException {
+            int length = (int) (to - from);
+            byte[] bytes = scratch(length);
+            for (int i = 0; i < length; i++) {
+                bytes[i] = byteAt(from + i);
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Opens a reader if the file exists.
+     *
+     * @param path The file to read
+     * @return A reader, or null if the file does not exist
+     * @throws IOException If the file cannot be opened
+     */
+    public static MappedRecordReader openIfExists(Path path) throws IOException {
+        return Files.exists(path) ? new MappedRecordReader(path) : null;
+    }
+}
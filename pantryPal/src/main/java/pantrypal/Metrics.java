@@ -0,0 +1,198 @@
+package pantrypal;
+
+import javax.management.*;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * PantryPal's built-in metrics: counters, gauges and latency histograms, keyed by dotted names
+ * such as {@code pantry.read}. Instruments are created on first use and live for the whole run.
+ *
+ * <p>Every metric is published as an attribute of the {@code pantrypal:type=Metrics} MBean, and a text
+ * dump of all of them is rewritten every {@code pantrypal.metrics.dumpSeconds} seconds (default 60, 0 to
+ * turn off) to {@code pantrypal.metrics.file} (default {@code ~/PantryPal/metrics.txt}).</p>
+ */
+public final class Metrics {
+    private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    static {
+        registerMBean();
+        long dumpSeconds = Long.getLong("pantrypal.metrics.dumpSeconds", 60);
+        if (dumpSeconds > 0) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(Metrics::dumpToFile, dumpSeconds, dumpSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     *
+     * @param name The counter's name
+     * @return The counter
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Returns the latency histogram with the given name, creating it on first use.
+     *
+     * @param name The histogram's name
+     * @return The histogram
+     */
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge, replacing any earlier gauge with the same name.
+     * The supplier is called whenever the metrics are read, from any thread.
+     *
+     * @param name  The gauge's name
+     * @param value Supplies the gauge's current value
+     */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Renders every metric as text, one per line, sorted by name. Latencies are in microseconds.
+     *
+     * @return The text dump
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder("# PantryPal metrics at ").append(Instant.now()).append(System.lineSeparator());
+        counters.forEach((name, counter) -> text.append(name).append(' ').append(counter.sum()).append(System.lineSeparator()));
+        gauges.forEach((name, gauge) -> text.append(name).append(' ').append(readGauge(gauge)).append(System.lineSeparator()));
+        histograms.forEach((name, histogram) -> {
+            text.append(name).append(" count=").append(histogram.count())
+                    .append(String.format(Locale.ROOT, " mean=%.1fus", histogram.mean() / 1000));
+            for (double percentile : PERCENTILES) {
+                text.append(String.format(Locale.ROOT, " p%s=%.1fus", label(percentile), histogram.percentile(percentile) / 1000.0));
+            }
+            text.append(String.format(Locale.ROOT, " max=%.1fus", histogram.max() / 1000.0)).append(System.lineSeparator());
+        });
+        return text.toString();
+    }
+
+    private static void dumpToFile() {
+        try {
+            Path path = Paths.get(System.getProperty("pantrypal.metrics.file",
+                    Paths.get(System.getProperty("user.home"), "PantryPal", "metrics.txt").toString()));
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(tempPath, dump(), StandardCharsets.UTF_8);
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing metrics: " + e.getMessage());
+        }
+    }
+
+    private static long readGauge(LongSupplier gauge) {
+        try {
+            return gauge.getAsLong();
+        } catch (RuntimeException e) {
+            return -1; // A failing gauge must not break the dump
+        }
+    }
+
+    private static String label(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    private static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName("pantrypal:type=Metrics"));
+        } catch (JMException e) {
+            System.err.println("Metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes every metric as a read-only attribute. Histograms appear as
+     * {@code name.count}, {@code name.mean}, {@code name.p50} and so on, in nanoseconds.
+     */
+    private static final class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = attributes().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Object> all = attributes();
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                if (all.containsKey(name)) {
+                    list.add(new Attribute(name, all.get(name)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            if ("dump".equals(actionName)) {
+                return dump();
+            }
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            attributes().forEach((name, value) -> infos.add(new MBeanAttributeInfo(name, value.getClass().getName(),
+                    name, true, false, false)));
+            MBeanOperationInfo dump = new MBeanOperationInfo("dump", "Renders every metric as text",
+                    new MBeanParameterInfo[0], String.class.getName(), MBeanOperationInfo.INFO);
+            return new MBeanInfo(Metrics.class.getName(), "PantryPal counters, gauges and latency histograms",
+                    infos.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] {dump}, null);
+        }
+
+        private static Map<String, Object> attributes() {
+            Map<String, Object> attributes = new TreeMap<>();
+            counters.forEach((name, counter) -> attributes.put(name, counter.sum()));
+            gauges.forEach((name, gauge) -> attributes.put(name, readGauge(gauge)));
+            histograms.forEach((name, histogram) -> {
+                attributes.put(name + ".count", histogram.count());
+                attributes.put(name + ".mean", histogram.mean());
+                for (double percentile : PERCENTILES) {
+                    attributes.put(name + ".p" + label(percentile), histogram.percentile(percentile));
+                }
+                attributes.put(name + ".max", histogram.max());
+            });
+            return attributes;
+        }
+    }
+}
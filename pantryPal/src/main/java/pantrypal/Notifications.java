@@ -1,19 +1,35 @@
 package pantrypal;
 
 import java.io.*;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 
 /**
  * Manages notifications for the PantryPal application.
  * Provides functionality for adding, retrieving, and clearing notifications.
+ * Each user's notifications live in their own segment file, so reading or clearing
+ * them never touches another user's data.
  * @author brayden graham
  */
 public class Notifications {
     private static final String DIRECTORY_NAME = "PantryPal";
-    private static final String NOTIFICATIONS_FILE_NAME = "notifications.csv";
+    private static final String NOTIFICATIONS_DIRECTORY_NAME = "notifications";
+    private static final String LEGACY_NOTIFICATIONS_FILE_NAME = "notifications.csv";
+    private static final Set<Path> migratedDirectories = new HashSet<>();
+    private static final LatencyHistogram ADD_LATENCY = Metrics.histogram("notifications.add");
+    private static final LatencyHistogram GET_LATENCY = Metrics.histogram("notifications.get");
+    private static final LatencyHistogram CLEAR_LATENCY = Metrics.histogram("notifications.clear");
     private String userId;
 
+    /**
+     * Handles one message while notifications are streamed by {@link #forEachNotification}.
+     */
+    public interface MessageHandler {
+        void message(String message) throws IOException;
+    }
+
     /**
      * Constructs a Notifications instance for a specific user.
      *
@@ -30,85 +46,134 @@ public class Notifications {
      * @throws IOException If an I/O error occurs
      */
     public void addNotification(String message) throws IOException {
-        Path filePath = getNotificationsFilePath();
-
-        // Ensure the directory exists
-        Files.createDirectories(filePath.getParent());
-
-        // Write or append the notification
-        try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-            String record = String.format("%s,%s%n", userId, message);
-            writer.write(record);
+        long start = System.nanoTime();
+        try {
+            // Queue the notification; it is written with the next batch
+            WriteBehindQueue.shared().append(getSegmentPath(userId), CsvCodec.record(message));
+        } finally {
+            ADD_LATENCY.recordSince(start);
         }
     }
 
     /**
      * Retrieves all notifications for the user.
+     * Only the user's own segment is read.
      *
      * @return A list of notifications for the user
      * @throws IOException If an I/O error occurs
      */
     public List<String> getNotifications() throws IOException {
-        Path filePath = getNotificationsFilePath();
+        long start = System.nanoTime();
         List<String> userNotifications = new ArrayList<>();
+        try {
+            forEachNotification(userNotifications::add);
+        } finally {
+            GET_LATENCY.recordSince(start);
+        }
 
-        if (Files.exists(filePath)) {
-            List<String> allLines = Files.readAllLines(filePath);
+        return userNotifications;
+    }
 
-            for (String line : allLines) {
-                String[] parts = line.split(",", 2); // Split into two parts: userId, message
-                if (parts.length == 2) {
-                    String notificationUserId = parts[0];
-                    String message = parts[1];
+    /**
+     * Hands the user's notifications to a handler one at a time, oldest first, without
+     * collecting them into a list.
+     *
+     * @param handler Called with each message
+     * @throws IOException If an I/O error occurs, or the handler throws one
+     */
+    public void forEachNotification(MessageHandler handler) throws IOException {
+        Path segmentPath = getSegmentPath(userId);
+        WriteBehindQueue.shared().flush(segmentPath); // Make queued notifications visible
 
-                    if (notificationUserId.equals(userId)) {
-                        userNotifications.add(message);
-                    }
-                }
+        try (MappedRecordReader reader = MappedRecordReader.openIfExists(segmentPath)) {
+            if (reader != null) {
+                reader.forEachRecord(0, reader.size(), record -> handler.message(message(record, 0)));
             }
         }
+    }
 
-        return userNotifications;
+    /**
+     * Decodes a message stored from the given field to the end of a record.
+     * Messages written before quoting was added may span several fields; their commas are kept.
+     */
+    private static String message(MappedRecordReader.Record record, int field) throws IOException {
+        return record.fieldCount() == field + 1 ? record.field(field) : record.rawFields(field, record.fieldCount());
     }
 
     /**
-     * Clears all notifications for the user.
+     * Clears all notifications for the user by dropping their segment.
+     * No other user's notifications are read or rewritten.
      *
      * @throws IOException If an I/O error occurs
      */
     public void clearNotifications() throws IOException {
-        Path filePath = getNotificationsFilePath();
-
-        if (!Files.exists(filePath)) {
-            return; // No notifications to clear
-        }
-
-        List<String> allLines = Files.readAllLines(filePath);
-        List<String> updatedLines = new ArrayList<>();
-
-        for (String line : allLines) {
-            String[] parts = line.split(",", 2);
-            if (parts.length == 2) {
-                String notificationUserId = parts[0];
-
-                // Keep notifications that belong to other users
-                if (!notificationUserId.equals(userId)) {
-                    updatedLines.add(line);
+        long start = System.nanoTime();
+        Path segmentPath = getSegmentPath(userId);
+
+        // Write queued notifications first, so none land in the segment after it is dropped,
+        // and wait out appends from other processes
+        try {
+            WriteBehindQueue.shared().runExclusive(segmentPath, () -> {
+                try (StripedFileLock.Handle lock = StripedFileLock.exclusive(segmentPath)) {
+                    Files.deleteIfExists(segmentPath);
                 }
-            }
+            });
+        } finally {
+            CLEAR_LATENCY.recordSince(start);
         }
-
-        // Rewrite the file with the remaining notifications
-        Files.write(filePath, updatedLines);
     }
 
     /**
-     * Utility method to get the file path for the notifications CSV file.
+     * Returns the path of a user's notification segment, splitting the legacy
+     * shared notifications file into segments the first time it is needed.
      *
-     * @return The Path to the notifications file
+     * @param userId The ID of the user
+     * @return The Path to the user's segment file
+     * @throws IOException If the legacy file cannot be migrated
      */
-    private static Path getNotificationsFilePath() {
-        String userHome = System.getProperty("user.home");
-        return Paths.get(userHome, DIRECTORY_NAME, NOTIFICATIONS_FILE_NAME);
+    static Path getSegmentPath(String userId) throws IOException {
+        Path directory = Paths.get(System.getProperty("user.home"), DIRECTORY_NAME);
+        migrateLegacyFile(directory);
+        return directory.resolve(NOTIFICATIONS_DIRECTORY_NAME)
+                .resolve(URLEncoder.encode(userId, StandardCharsets.UTF_8) + ".csv");
+    }
+
+    /**
+     * Splits the legacy shared notifications.csv (userId,message records) into per-user segments
+     * in one pass, then renames it so it is not migrated again.
+     */
+    private static synchronized void migrateLegacyFile(Path directory) throws IOException {
+        if (!migratedDirectories.add(directory)) {
+            return;
+        }
+        Path legacyPath = directory.resolve(LEGACY_NOTIFICATIONS_FILE_NAME);
+        if (!Files.exists(legacyPath)) {
+            return;
+        }
+        try (StripedFileLock.Handle lock = StripedFileLock.exclusive(legacyPath)) {
+            if (Files.exists(legacyPath)) { // Another process may have migrated it while we waited
+                splitLegacyFile(directory, legacyPath);
+            }
+        }
+    }
+
+    private static void splitLegacyFile(Path directory, Path legacyPath) throws IOException {
+        Map<String, StringBuilder> segments = new LinkedHashMap<>();
+        try (MappedRecordReader reader = new MappedRecordReader(legacyPath)) {
+            reader.forEachRecord(0, reader.size(), record -> {
+                if (record.fieldCount() >= 2) {
+                    segments.computeIfAbsent(record.field(0), key -> new StringBuilder())
+                            .append(CsvCodec.record(message(record, 1)));
+                }
+            });
+        }
+
+        Files.createDirectories(directory.resolve(NOTIFICATIONS_DIRECTORY_NAME));
+        for (Map.Entry<String, StringBuilder> segment : segments.entrySet()) {
+            Files.writeString(getSegmentPath(segment.getKey()), segment.getValue(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        Files.move(legacyPath, legacyPath.resolveSibling(LEGACY_NOTIFICATIONS_FILE_NAME + ".migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
     }
 }
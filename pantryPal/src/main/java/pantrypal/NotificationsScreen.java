@@ -18,6 +18,7 @@ public class NotificationsScreen extends JFrame {
     private JButton markAllReadButton; // Button to mark all notifications as read
     private JButton deleteAllButton; // Button to delete all notifications
     private JButton backToHomeButton;  // Button to navigate back to HomeScreen
+    private PantryApp app; // Reference to PantryApp for the current user and its service
 
     /**
      * Constructs a NotificationsScreen instance with a list of notifications.
@@ -28,6 +29,7 @@ public class NotificationsScreen extends JFrame {
      */
     
     public NotificationsScreen(PantryApp app, List<String> notifications) {
+        this.app = app;
         setTitle("Notifications");
         setSize(400, 300);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
@@ -88,13 +90,19 @@ public class NotificationsScreen extends JFrame {
     }
 
     /**
-     * Deletes all notifications from the list.
+     * Deletes all notifications from the list and from the user's saved notifications.
      * If there are no notifications, shows a message indicating so.
      */
     
     private void deleteAllNotifications() {
         if (!notificationModel.isEmpty()) {
             notificationModel.clear();
+            app.getNotifications().clear();
+
+            // Drop the saved notifications too, off the EDT
+            PantryService.onEdt(app.getService().clearNotifications(app.getCurrentUser()), done -> { },
+                    error -> JOptionPane.showMessageDialog(this, "Could not delete notifications: " + error.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE));
         } else {
             JOptionPane.showMessageDialog(this, "No notifications to delete.");
         }
@@ -1,8 +1,19 @@
 package pantrypal;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.swing.*;
 
@@ -14,19 +25,26 @@ import javax.swing.*;
  */
 
 public class PantryApp {
+    private static final LatencyHistogram LOGIN_LATENCY = Metrics.histogram("auth.login");
+    private static final LatencyHistogram REGISTER_LATENCY = Metrics.histogram("auth.register");
+    private static final LongAdder LOGIN_FAILURES = Metrics.counter("auth.login.failures");
+    private static final int MAX_PRINTED_IMPORT_ERRORS = 100; // Rejected rows listed by --import
 
     private String appName; // The name of the application
-    private List<User> userList; // A list of registered users
+    private UserDirectory userDirectory; // Registered users, indexed by username
+    private final Set<String> pendingUsernames = new HashSet<>(); // Usernames being registered right now
     private User currentUser; // The currently logged-in user
     private List<String> notifications; // A list to hold notifications
-    private List<ShoppingListItem> shoppingList; // List to hold shopping list items
+    private final Map<String, ShoppingListLog> shoppingLists; // Loaded shopping lists by user ID
+    private final PantryService service; // Runs user and pantry work off the Swing EDT
 
     // Constructor to initialize the PantryApp with a name
     public PantryApp(String appName) {
         this.appName = appName;
-        this.userList = User.loadUsers();
+        this.userDirectory = User.loadUsers();
         this.notifications = new ArrayList<>();
-        this.shoppingList = new ArrayList<>();
+        this.shoppingLists = new HashMap<>();
+        this.service = new PantryService(this);
     }
 
     // Starts the application (placeholder method)
@@ -34,34 +52,81 @@ public class PantryApp {
         System.out.println(appName + " is starting...");
     }
 
+    // Gets the asynchronous service the screens use for hashing and file I/O
+    public PantryService getService() {
+        return service;
+    }
+
     // Registers a new user in the system
-    public void registerUser(User user) {
-        for (User existingUser : userList) {
-            if (existingUser.getUsername().equals(user.getUsername())) {
-                throw new IllegalArgumentException("Username already exists: " + user.getUsername());
+    public synchronized void registerUser(User user) {
+        userDirectory.add(user); // Rejects duplicate usernames
+        System.out.println("User registered: " + user.getUsername());
+    }
+
+    // Creates, saves and registers a new user; the username is checked and reserved before anything is
+    // written, then the password is hashed and the user saved outside the lock so logins don't wait
+    public User registerUser(String username, String password) throws IOException {
+        long start = System.nanoTime();
+        try {
+            synchronized (this) {
+                if (userDirectory.contains(username) || !pendingUsernames.add(username)) {
+                    throw new IllegalArgumentException("Username already exists: " + username);
+                }
             }
+            try {
+                User user = new User(username, password); // Hashes the password and saves the user
+                registerUser(user);
+                return user;
+            } finally {
+                synchronized (this) {
+                    pendingUsernames.remove(username);
+                }
+            }
+        } finally {
+            REGISTER_LATENCY.recordSince(start);
         }
-        userList.add(user);
-        System.out.println("User registered: " + user.getUsername());
     }
 
-    // Logs in a user with the given username and password
+    // Logs in a user with the given username and password, making them the current user
     public User loginUser(String username, String password) {
-        for (User user : userList) {
-            if (user.getUsername().equals(username) && user.validatePassword(password)) {
-                System.out.println("User logged in: " + username);
-                currentUser = user; // Set the current user
+        User user = authenticate(username, password);
+        System.out.println("User logged in: " + username);
+        setCurrentUser(user);
+        return user;
+    }
+
+    // Checks a username and password without changing the current user; the server keeps its own sessions
+    public User authenticate(String username, String password) {
+        long start = System.nanoTime();
+        try {
+            User user;
+            synchronized (this) {
+                user = userDirectory.find(username);
+            }
+            if (user != null && user.validatePassword(password)) { // Hash outside the lock
                 return user;
             }
+            LOGIN_FAILURES.increment();
+            throw new IllegalArgumentException("Invalid username or password.");
+        } finally {
+            LOGIN_LATENCY.recordSince(start);
         }
-        throw new IllegalArgumentException("Invalid username or password.");
+    }
+
+    // Finds a registered user by username, or returns null
+    public synchronized User findUser(String username) {
+        return userDirectory.find(username);
     }
 
     // Gets the currently logged-in user
-    public User getCurrentUser() {
+    public synchronized User getCurrentUser() {
         return currentUser;
     }
 
+    private synchronized void setCurrentUser(User user) {
+        currentUser = user;
+    }
+
     // Gets the list of notifications for the current user
     public List<String> getNotifications() {
         return notifications;
@@ -74,31 +139,159 @@ public class PantryApp {
 
     // Shopping List Methods
 
-    // Adds a shopping list item
-    public void addShoppingListItem(ShoppingListItem item) {
-        shoppingList.add(item);
+    // Gets a user's shopping list and its log, reading only that user's file the first time
+    public ShoppingListLog getShoppingListLog(User user) throws IOException {
+        synchronized (shoppingLists) {
+            ShoppingListLog log = shoppingLists.get(user.getId());
+            if (log == null) {
+                log = ShoppingListLog.open(user.getId());
+                shoppingLists.put(user.getId(), log);
+            }
+            return log;
+        }
     }
 
-    // Removes a shopping list item by name
-    public boolean removeShoppingListItem(String itemName) {
-        return shoppingList.removeIf(item -> item.getItemName().equalsIgnoreCase(itemName));
+    // Adds a shopping list item for the current user and saves the change
+    public void addShoppingListItem(ShoppingListItem item) throws IOException {
+        ShoppingListLog log = currentShoppingListLog();
+        log.getList().addItem(item);
+        log.save();
     }
 
-    // Retrieves the list of shopping list items
-    public List<ShoppingListItem> getShoppingList() {
-        return shoppingList;
+    // Removes the current user's shopping list item with the given name and saves the change
+    public boolean removeShoppingListItem(String itemName) throws IOException {
+        ShoppingListLog log = currentShoppingListLog();
+        boolean removed = log.getList().removeItem(itemName);
+        log.save();
+        return removed;
     }
 
-    // Clears all shopping list items
-    public void clearShoppingList() {
-        shoppingList.clear();
+    // Retrieves the current user's shopping list items
+    public List<ShoppingListItem> getShoppingList() throws IOException {
+        return currentShoppingListLog().getList().listItems();
+    }
+
+    // Clears the current user's shopping list and saves the change
+    public void clearShoppingList() throws IOException {
+        ShoppingListLog log = currentShoppingListLog();
+        log.getList().clearList();
+        log.save();
+    }
+
+    private ShoppingListLog currentShoppingListLog() throws IOException {
+        User user = getCurrentUser();
+        if (user == null) {
+            throw new IllegalStateException("No user is logged in.");
+        }
+        return getShoppingListLog(user);
     }
 
-    // Main method to start the application
+    // Imports a file into a user's pantry from the command line and returns the exit status
+    private int runImport(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: PantryApp --import <username> <file.csv|file.json>");
+            return 2;
+        }
+        User user = findUser(args[1]);
+        if (user == null) {
+            System.err.println("No such user: " + args[1]);
+            return 1;
+        }
+
+        long start = System.nanoTime();
+        PantryImporter.Result result = new PantryImporter(User.getPantryStore()).importFile(user.getId(), Paths.get(args[2]));
+        WriteBehindQueue.shared().flush(User.getPantryStore().getFilePath());
+        System.out.printf("%s in %d ms%n", result, (System.nanoTime() - start) / 1_000_000);
+        List<PantryImporter.RowError> errors = result.getErrors();
+        for (int i = 0; i < Math.min(errors.size(), MAX_PRINTED_IMPORT_ERRORS); i++) {
+            System.out.println(errors.get(i));
+        }
+        if (errors.size() > MAX_PRINTED_IMPORT_ERRORS) {
+            System.out.println("... and " + (errors.size() - MAX_PRINTED_IMPORT_ERRORS) + " more");
+        }
+        return 0;
+    }
+
+    // Exports pantries, notifications or users from the command line and returns the exit status
+    private int runExport(String[] args) throws IOException {
+        if (args.length < 3 || args.length % 2 == 0 || !List.of("pantries", "notifications", "users").contains(args[1])) {
+            System.err.println("Usage: PantryApp --export <pantries|notifications|users> <file[.gz]> "
+                    + "[--user <username>] [--category <category>] [--from <date>] [--to <date>]");
+            return 2;
+        }
+        PantryExporter exporter = new PantryExporter(userDirectory, User.getPantryStore());
+        LocalDate from = null;
+        LocalDate to = null;
+        for (int i = 3; i < args.length; i += 2) {
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--user" -> {
+                        if (findUser(value) == null) {
+                            System.err.println("No such user: " + value);
+                            return 1;
+                        }
+                        exporter.setUsername(value);
+                    }
+                    case "--category" -> exporter.setCategory(value);
+                    case "--from" -> from = LocalDate.parse(value);
+                    case "--to" -> to = LocalDate.parse(value);
+                    default -> {
+                        System.err.println("Unknown option: " + args[i]);
+                        return 2;
+                    }
+                }
+            } catch (DateTimeParseException e) {
+                System.err.println("Dates must look like 2024-12-31: " + value);
+                return 2;
+            }
+        }
+        exporter.setExpirationRange(from, to);
+
+        long start = System.nanoTime();
+        Path file = Paths.get(args[2]);
+        long records = switch (args[1]) {
+            case "pantries" -> exporter.exportPantries(file);
+            case "notifications" -> exporter.exportNotifications(file);
+            default -> exporter.exportUsers(file);
+        };
+        System.out.printf("Exported %d %s to %s in %d ms%n", records, args[1], file, (System.nanoTime() - start) / 1_000_000);
+        return 0;
+    }
+
+    // Main method to start the application; "--server [port]" runs it headless as an HTTP server,
+    // "--import <username> <file>" bulk-imports a CSV or JSON file into a user's pantry,
+    // and "--export <pantries|notifications|users> <file>" streams data out to CSV or JSON Lines
     public static void main(String[] args) throws IOException {
         // Create an instance of the application with the name "Pantry Manager"
         PantryApp pantryApp = new PantryApp("PantryPal");
 
+        if (args.length > 0 && args[0].equals("--import")) {
+            System.exit(pantryApp.runImport(args));
+        }
+        if (args.length > 0 && args[0].equals("--export")) {
+            System.exit(pantryApp.runExport(args));
+        }
+
+        // Write expiry alerts into users' notifications in the background
+        ExpiryScanner.startDefault();
+
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : PantryServer.DEFAULT_PORT;
+            // Responses go out as a header write and a body write; without TCP_NODELAY the second one
+            // waits for the client's delayed ACK, adding ~40 ms to every keep-alive request
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+            PantryServer server = new PantryServer(pantryApp, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            server.start();
+            System.out.println(pantryApp.appName + " is serving on http://localhost:" + server.getPort() + "/api");
+            return;
+        }
+
+        // Report anything that blocks the Swing event thread
+        EdtWatchdog.installDefault();
+
         // Set up the login screen and pass the PantryApp instance to it
         SwingUtilities.invokeLater(() -> {
             LoginScreen loginScreen = new LoginScreen(pantryApp);
@@ -0,0 +1,456 @@
+package pantrypal;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A column-oriented collection of pantry items for bulk queries.
+ * Each field is a primitive array indexed by row: quantities, expiration epoch days, and
+ * {@link SymbolTable} ids for units and categories. Names are packed into one char buffer with
+ * an offset per row. Scans over one column touch only that array, with no per-item objects or
+ * pointer chasing, so the JIT can unroll and vectorize them.
+ *
+ * <p>Existing code that works with {@link PantryItem} can use {@link #item}, {@link #forEach} or
+ * {@link #asList}, which return lightweight views over a row instead of copies.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+public class PantryColumns {
+    private int size;
+    private int[] quantities;
+    private int[] epochDays;     // Expiration dates as epoch days
+    private int[] units;         // SymbolTable ids
+    private int[] categories;    // SymbolTable ids
+    private int[] nameOffsets;   // Row i's name is names[nameOffsets[i], nameOffsets[i + 1])
+    private char[] names;
+    private Map<Integer, String> unitNames;     // Row -> unit, for units the symbol table had no room for
+    private Map<Integer, String> categoryNames; // Row -> category, likewise; both null until needed
+    private Map<Integer, String> renamed;       // Row -> name set through a view; null until needed
+
+    /**
+     * Constructs an empty collection.
+     */
+    public PantryColumns() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty collection sized for the given number of items.
+     *
+     * @param capacity The expected number of items
+     */
+    public PantryColumns(int capacity) {
+        capacity = Math.max(1, capacity);
+        quantities = new int[capacity];
+        epochDays = new int[capacity];
+        units = new int[capacity];
+        categories = new int[capacity];
+        nameOffsets = new int[capacity + 1];
+        names = new char[capacity * 8];
+    }
+
+    /**
+     * Copies a list of items into columns.
+     *
+     * @param items The items
+     * @return The columns
+     */
+    public static PantryColumns of(List<PantryItem> items) {
+        PantryColumns columns = new PantryColumns(items.size());
+        for (PantryItem item : items) {
+            columns.add(item);
+        }
+        return columns;
+    }
+
+    /**
+     * Appends a copy of an item.
+     *
+     * @param item The item
+     */
+    public void add(PantryItem item) {
+        int unitId = item.getUnitId();
+        int categoryId = item.getCategoryId();
+        add(item.getItemName(), item.getQuantity(), unitId, (int) item.getExpirationDate().toEpochDay(), categoryId);
+        if (unitId == SymbolTable.UNINTERNED || categoryId == SymbolTable.UNINTERNED) {
+            setNames(size - 1, unitId, item.getUnit(), categoryId, item.getCategory());
+        }
+    }
+
+    /**
+     * Appends an item from its fields, interning the unit and category.
+     *
+     * @param itemName The name of the item
+     * @param quantity The quantity
+     * @param unit     The unit
+     * @param epochDay The expiration date as an epoch day
+     * @param category The category
+     */
+    public void add(String itemName, int quantity, String unit, int epochDay, String category) {
+        int unitId = SymbolTable.id(unit);
+        int categoryId = SymbolTable.id(category);
+        add(itemName, quantity, unitId, epochDay, categoryId);
+        if (unitId == SymbolTable.UNINTERNED || categoryId == SymbolTable.UNINTERNED) {
+            setNames(size - 1, unitId, unit, categoryId, category);
+        }
+    }
+
+    /**
+     * Appends an item from its fields.
+     *
+     * @param itemName   The name of the item
+     * @param quantity   The quantity
+     * @param unitId     The {@link SymbolTable} id of the unit; not {@link SymbolTable#UNINTERNED}
+     * @param epochDay   The expiration date as an epoch day
+     * @param categoryId The {@link SymbolTable} id of the category; not {@link SymbolTable#UNINTERNED}
+     */
+    public void add(String itemName, int quantity, int unitId, int epochDay, int categoryId) {
+        if (size == quantities.length) {
+            int capacity = size * 2;
+            quantities = Arrays.copyOf(quantities, capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            units = Arrays.copyOf(units, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+        }
+        int nameStart = nameOffsets[size];
+        int nameEnd = nameStart + itemName.length();
+        if (nameEnd > names.length) {
+            names = Arrays.copyOf(names, Math.max(nameEnd, names.length * 2));
+        }
+        itemName.getChars(0, itemName.length(), names, nameStart);
+
+        quantities[size] = quantity;
+        epochDays[size] = epochDay;
+        units[size] = unitId;
+        categories[size] = categoryId;
+        nameOffsets[size + 1] = nameEnd;
+        size++;
+    }
+
+    /**
+     * @return The number of items
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the name of the item in a row. Allocates a String; use {@link #nameEquals} to compare.
+     *
+     * @param row The row
+     * @return The item's name
+     */
+    public String name(int row) {
+        checkRow(row);
+        if (renamed != null && renamed.containsKey(row)) {
+            return renamed.get(row);
+        }
+        return new String(names, nameOffsets[row], nameOffsets[row + 1] - nameOffsets[row]);
+    }
+
+    /**
+     * Checks whether the item in a row has the given name, without building a String.
+     *
+     * @param row      The row
+     * @param itemName The name to compare with
+     * @return True if the names are equal
+     */
+    public boolean nameEquals(int row, String itemName) {
+        checkRow(row);
+        if (renamed != null && renamed.containsKey(row)) {
+            return renamed.get(row).equals(itemName);
+        }
+        int start = nameOffsets[row];
+        int length = nameOffsets[row + 1] - start;
+        if (length != itemName.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (names[start + i] != itemName.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param row The row
+     * @return The quantity of the item in the row
+     */
+    public int quantity(int row) {
+        checkRow(row);
+        return quantities[row];
+    }
+
+    /**
+     * @param row The row
+     * @return The expiration date of the item in the row, as an epoch day
+     */
+    public int epochDay(int row) {
+        checkRow(row);
+        return epochDays[row];
+    }
+
+    /**
+     * @param row The row
+     * @return The {@link SymbolTable} id of the unit of the item in the row
+     */
+    public int unitId(int row) {
+        checkRow(row);
+        return units[row];
+    }
+
+    /**
+     * @param row The row
+     * @return The unit of the item in the row
+     */
+    public String unit(int row) {
+        checkRow(row);
+        return units[row] == SymbolTable.UNINTERNED ? unitNames.get(row) : SymbolTable.name(units[row]);
+    }
+
+    /**
+     * @param row The row
+     * @return The {@link SymbolTable} id of the category of the item in the row
+     */
+    public int categoryId(int row) {
+        checkRow(row);
+        return categories[row];
+    }
+
+    /**
+     * @param row The row
+     * @return The category of the item in the row
+     */
+    public String category(int row) {
+        checkRow(row);
+        return categories[row] == SymbolTable.UNINTERNED ? categoryNames.get(row) : SymbolTable.name(categories[row]);
+    }
+
+    /**
+     * Counts the items that are expired on the given date.
+     *
+     * @param today The date to check against
+     * @return The number of items that expired before that date
+     */
+    public int countExpired(LocalDate today) {
+        int todayEpochDay = (int) today.toEpochDay();
+        int[] days = epochDays;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count += days[i] < todayEpochDay ? 1 : 0; // Branch-free, so the loop vectorizes
+        }
+        return count;
+    }
+
+    /**
+     * Sums quantities by category.
+     *
+     * @return The total quantity for each category, indexed by {@link SymbolTable} id; items without
+     *         a category, or with one the table had no room for, are not counted
+     */
+    public long[] sumQuantityByCategory() {
+        return sumQuantityBy(categories);
+    }
+
+    /**
+     * Sums quantities by unit.
+     *
+     * @return The total quantity for each unit, indexed by {@link SymbolTable} id; items without
+     *         a unit, or with one the table had no room for, are not counted
+     */
+    public long[] sumQuantityByUnit() {
+        return sumQuantityBy(units);
+    }
+
+    /**
+     * Finds the items that expire within a date range.
+     *
+     * @param from The first date of the range, inclusive
+     * @param to   The last date of the range, inclusive
+     * @return The rows of the matching items, ascending
+     */
+    public int[] filterByExpiration(LocalDate from, LocalDate to) {
+        int fromEpochDay = (int) from.toEpochDay();
+        int toEpochDay = (int) to.toEpochDay();
+        int[] days = epochDays;
+        int[] rows = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            rows[count] = i;
+            count += days[i] >= fromEpochDay && days[i] <= toEpochDay ? 1 : 0; // Write always, keep on match
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Returns a view of one row as a {@link PantryItem}. Getters read the columns and setters
+     * write to them. A name set through a view is kept aside, since the packed names have no room for it.
+     *
+     * @param row The row
+     * @return A view of the row
+     */
+    public PantryItem item(int row) {
+        checkRow(row);
+        return new Row(row);
+    }
+
+    /**
+     * Passes each row to an action as a {@link PantryItem} view. The same view object is moved from
+     * row to row, so the action must not keep it; copy it with {@link PantryItem#PantryItem(PantryItem)}.
+     *
+     * @param action The action
+     */
+    public void forEach(Consumer<? super PantryItem> action) {
+        Row cursor = new Row(0);
+        for (int row = 0; row < size; row++) {
+            cursor.row = row;
+            action.accept(cursor);
+        }
+    }
+
+    /**
+     * Returns a read-only list of views over the rows, for callers that expect a {@code List<PantryItem>}.
+     * Each call to {@code get} returns a new view; nothing is copied.
+     *
+     * @return The list view
+     */
+    public List<PantryItem> asList() {
+        return new AbstractList<>() {
+            @Override
+            public PantryItem get(int row) {
+                return item(row);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private long[] sumQuantityBy(int[] symbols) {
+        long[] sums = new long[SymbolTable.size()];
+        int[] quantity = quantities;
+        for (int i = 0; i < size; i++) {
+            int symbol = symbols[i];
+            if (symbol >= 0) {
+                sums[symbol] += quantity[i];
+            }
+        }
+        return sums;
+    }
+
+    private void setNames(int row, int unitId, String unit, int categoryId, String category) {
+        if (unitId == SymbolTable.UNINTERNED) {
+            if (unitNames == null) {
+                unitNames = new HashMap<>();
+            }
+            unitNames.put(row, unit);
+        } else if (unitNames != null) {
+            unitNames.remove(row);
+        }
+        if (categoryId == SymbolTable.UNINTERNED) {
+            if (categoryNames == null) {
+                categoryNames = new HashMap<>();
+            }
+            categoryNames.put(row, category);
+        } else if (categoryNames != null) {
+            categoryNames.remove(row);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+    }
+
+    /**
+     * A {@link PantryItem} backed by one row of the columns.
+     */
+    private final class Row extends PantryItem {
+        private int row;
+
+        private Row(int row) {
+            super(null, 0, SymbolTable.NULL_ID, null, SymbolTable.NULL_ID);
+            this.row = row;
+        }
+
+        @Override
+        public String getItemName() {
+            return name(row);
+        }
+
+        @Override
+        public int getQuantity() {
+            return quantities[row];
+        }
+
+        @Override
+        public int getUnitId() {
+            return units[row];
+        }
+
+        @Override
+        public String getUnit() {
+            return unit(row);
+        }
+
+        @Override
+        public LocalDate getExpirationDate() {
+            return LocalDate.ofEpochDay(epochDays[row]);
+        }
+
+        @Override
+        public int getCategoryId() {
+            return categories[row];
+        }
+
+        @Override
+        public String getCategory() {
+            return category(row);
+        }
+
+        @Override
+        public void setItemName(String itemName) {
+            if (renamed == null) {
+                renamed = new HashMap<>();
+            }
+            renamed.put(row, itemName);
+        }
+
+        @Override
+        public void setQuantity(int quantity) {
+            quantities[row] = quantity;
+        }
+
+        @Override
+        public void setUnit(String unit) {
+            units[row] = SymbolTable.id(unit);
+            setNames(row, units[row], unit, categories[row], category(row));
+        }
+
+        @Override
+        public void setExpirationDate(LocalDate expirationDate) {
+            epochDays[row] = (int) expirationDate.toEpochDay();
+        }
+
+        @Override
+        public void setCategory(String category) {
+            categories[row] = SymbolTable.id(category);
+            setNames(row, units[row], unit(row), categories[row], category);
+        }
+
+        @Override
+        public boolean isExpired(LocalDate today) {
+            return epochDays[row] < today.toEpochDay();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package pantrypal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports pantries, notifications and users to CSV or JSON Lines files.
+ *
+ * <p>Exports stream: pantries are walked one item at a time with {@link PantryStore#forEachItem} and
+ * notifications with {@link Notifications#forEachNotification}, and records are encoded into a single
+ * buffer of about {@value #BUFFER_CHARS} characters that is written out through one channel whenever
+ * it fills. Memory use stays the same however large the dataset is. The store is locked only while
+ * each user's rows are found; items are encoded, compressed and written without it.</p>
+ *
+ * <p>The format follows the file name: JSON Lines for .json, .jsonl or .ndjson and CSV with a header
+ * row otherwise, gzip-compressed when the name also ends in .gz. Exports can be limited to one user,
+ * and pantry exports to one category and a range of expiration dates. Users are exported without
+ * their password hashes or salts.</p>
+ */
+public class PantryExporter {
+    private static final int BUFFER_CHARS = 64 * 1024;
+    private static final LatencyHistogram EXPORT_LATENCY = Metrics.histogram("export");
+    private static final LongAdder RECORDS_EXPORTED = Metrics.counter("export.records");
+
+    private final UserDirectory users;   // Whose data is exported, and how user IDs map to usernames
+    private final PantryStore store;     // Where pantries are read from
+    private String username;             // The only user to export, or null for everyone
+    private String category;             // The only category of items to export, or null for all
+    private int categoryId;              // Its SymbolTable id, looked up without interning the filter
+    private LocalDate expiringFrom;      // First expiration date to export, or null for no lower bound
+    private LocalDate expiringTo;        // Last expiration date to export, or null for no upper bound
+
+    /**
+     * Constructs an exporter over every user in a directory. The directory must not change while an
+     * export runs.
+     *
+     * @param users The users to export
+     * @param store The store holding their pantries
+     */
+    public PantryExporter(UserDirectory users, PantryStore store) {
+        this.users = users;
+        this.store = store;
+    }
+
+    /**
+     * Limits exports to one user.
+     *
+     * @param username The user's username, or null to export every user
+     */
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    /**
+     * Limits pantry exports to items in one category.
+     *
+     * @param category The category, or null to export every category
+     */
+    public void setCategory(String category) {
+        this.category = category;
+        this.categoryId = SymbolTable.lookup(category);
+    }
+
+    /**
+     * Limits pantry exports to items expiring between two dates, inclusive.
+     *
+     * @param from The first expiration date to export, or null for no lower bound
+     * @param to   The last expiration date to export, or null for no upper bound
+     */
+    public void setExpirationRange(LocalDate from, LocalDate to) {
+        this.expiringFrom = from;
+        this.expiringTo = to;
+    }
+
+    /**
+     * Exports pantry items as {@code username,itemName,quantity,unit,expirationDate,category} records.
+     * Each user's pantry is read under the store lock, so every pantry is exported as of one moment.
+     *
+     * @param file The file to write; replaced if it exists
+     * @return The number of items exported
+     * @throws IOException If a pantry cannot be read or the file cannot be written
+     */
+    public long exportPantries(Path file) throws IOException {
+        return export(file, new String[] {"username", "itemName", "quantity", "unit", "expirationDate", "category"},
+                writer -> {
+                    for (User user : selectedUsers()) {
+                        store.forEachItem(user.getId(), item -> {
+                            if (accepts(item)) {
+                                writer.write(user.getUsername(), item.getItemName(), item.getQuantity(),
+                                        item.getUnit(), item.getExpirationDate(), item.getCategory());
+                            }
+                        });
+                    }
+                });
+    }
+
+    /**
+     * Exports notifications as {@code username,message} records, oldest first for each user.
+     *
+     * @param file The file to write; replaced if it exists
+     * @return The number of notifications exported
+     * @throws IOException If notifications cannot be read or the file cannot be written
+     */
+    public long exportNotifications(Path file) throws IOException {
+        return export(file, new String[] {"username", "message"}, writer -> {
+            for (User user : selectedUsers()) {
+                new Notifications(user.getId()).forEachNotification(message -> writer.write(user.getUsername(), message));
+            }
+        });
+    }
+
+    /**
+     * Exports users as {@code id,username} records, in registration order.
+     *
+     * @param file The file to write; replaced if it exists
+     * @return The number of users exported
+     * @throws IOException If the file cannot be written
+     */
+    public long exportUsers(Path file) throws IOException {
+        return export(file, new String[] {"id", "username"}, writer -> {
+            for (User user : selectedUsers()) {
+                writer.write(user.getId(), user.getUsername());
+            }
+        });
+    }
+
+    /**
+     * Writes one export, deleting the partly written file if anything fails.
+     */
+    private long export(Path file, String[] columns, Exporter exporter) throws IOException {
+        long start = System.nanoTime();
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean gzip = name.endsWith(".gz");
+        name = gzip ? name.substring(0, name.length() - 3) : name;
+        boolean json = name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson");
+
+        boolean finished = false;
+        try (RecordWriter writer = new RecordWriter(file, gzip, columns, json)) {
+            if (!json) {
+                writer.write((Object[]) columns);
+            }
+            exporter.export(writer);
+            writer.drain();
+            finished = true;
+            long records = json ? writer.count : writer.count - 1;
+            RECORDS_EXPORTED.add(records);
+            return records;
+        } finally {
+            if (!finished) {
+                Files.deleteIfExists(file);
+            }
+            EXPORT_LATENCY.recordSince(start);
+        }
+    }
+
+    private Iterable<User> selectedUsers() {
+        if (username == null) {
+            return users;
+        }
+        User user = users.find(username);
+        return user == null ? List.of() : List.of(user);
+    }
+
+    private boolean accepts(PantryItem item) {
+        if (category != null && (categoryId != SymbolTable.UNINTERNED ? item.getCategoryId() != categoryId
+                : !category.equals(item.getCategory()))) {
+            return false; // A category not in the table can only be on items that keep it as a string
+        }
+        LocalDate expirationDate = item.getExpirationDate();
+        return (expiringFrom == null || !expirationDate.isBefore(expiringFrom))
+                && (expiringTo == null || !expirationDate.isAfter(expiringTo));
+    }
+
+    /**
+     * Writes the records of one export.
+     */
+    private interface Exporter {
+        void export(RecordWriter writer) throws IOException;
+    }
+
+    /**
+     * Encodes records into one reused buffer and writes it to the file whenever it fills.
+     */
+    private static final class RecordWriter implements Closeable {
+        private final FileChannel file;
+        private final WritableByteChannel channel; // The file, or a gzip stream over it
+        private final String[] columns;            // Field names, for JSON records
+        private final boolean json;
+        private final StringBuilder records = new StringBuilder(BUFFER_CHARS + 1024);
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_CHARS); // Encoded records on their way out
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final Object[] namesAndValues;     // Reused argument array for Json.appendObject
+        private long count;                        // Records written, including a CSV header
+
+        private RecordWriter(Path path, boolean gzip, String[] columns, boolean json) throws IOException {
+            this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.channel = gzip ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file), BUFFER_CHARS))
+                    : file;
+            this.columns = columns;
+            this.json = json;
+            this.namesAndValues = new Object[columns.length * 2];
+        }
+
+        private void write(Object... fields) throws IOException {
+            if (json) {
+                for (int i = 0; i < fields.length; i++) {
+                    namesAndValues[2 * i] = columns[i];
+                    namesAndValues[2 * i + 1] = fields[i];
+                }
+                Json.appendObject(records, namesAndValues);
+            } else {
+                for (int i = 0; i < fields.length; i++) {
+                    if (i > 0) {
+                        records.append(',');
+                    }
+                    CsvCodec.appendField(records, String.valueOf(fields[i]));
+                }
+            }
+            records.append('\n');
+            count++;
+            if (records.length() >= BUFFER_CHARS) {
+                drain();
+            }
+        }
+
+        /**
+         * Encodes the buffered records and writes them out, a buffer of bytes at a time.
+         */
+        private void drain() throws IOException {
+            CharBuffer chars = CharBuffer.wrap(records);
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, true);
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                bytes.clear();
+                if (result.isUnderflow()) {
+                    break;
+                }
+            }
+            encoder.reset();
+            records.setLength(0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.close(); // Writes the gzip trailer; closes the file too
+            } finally {
+                file.close();
+            }
+        }
+    }
+}
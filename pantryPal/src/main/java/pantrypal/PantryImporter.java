@@ -0,0 +1,448 @@
+package pantrypal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Imports many pantry items for one user from a file in a single batch.
+ *
+ * <p>Two formats are read: CSV with the columns {@code itemName,quantity,unit,expirationDate,category}
+ * and an optional header row, and JSON, either an array of objects or one object per line, with the
+ * same field names. One sequential pass finds where rows start; the rows are then parsed and
+ * validated in parallel on a {@link ForkJoinPool}, in chunks of {@value #CHUNK_ROWS}. Accepted items
+ * are sorted by expiration date, keeping file order within a date, and written with one
+ * {@link PantryStore#addAll} call.
+ * Rejected rows are reported by row number and do not stop the import.</p>
+ */
+public class PantryImporter {
+    private static final int CHUNK_ROWS = 16_384;
+    private static final int FIELDS = 5;
+    private static final LatencyHistogram IMPORT_LATENCY = Metrics.histogram("pantry.import");
+    private static final LongAdder ROWS_IMPORTED = Metrics.counter("pantry.import.rows");
+    private static final LongAdder ROWS_REJECTED = Metrics.counter("pantry.import.rejected");
+
+    private final PantryStore store;
+    private final ForkJoinPool pool;
+
+    /**
+     * A row that was not imported.
+     */
+    public static final class RowError {
+        private final long row;
+        private final String message;
+
+        private RowError(long row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        /**
+         * @return The 1-based number of the row in the file; a CSV header counts as row 1
+         */
+        public long getRow() {
+            return row;
+        }
+
+        /**
+         * @return Why the row was rejected
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + row + ": " + message;
+        }
+    }
+
+    /**
+     * The outcome of an import.
+     */
+    public static final class Result {
+        private final int importedCount;
+        private final List<RowError> errors;
+
+        private Result(int importedCount, List<RowError> errors) {
+            this.importedCount = importedCount;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * @return The number of items added to the pantry
+         */
+        public int getImportedCount() {
+            return importedCount;
+        }
+
+        /**
+         * @return The rejected rows, in file order
+         */
+        public List<RowError> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return "Imported " + importedCount + " items, rejected " + errors.size() + " rows";
+        }
+    }
+
+    /**
+     * The items and errors of one chunk, in file order.
+     */
+    private static final class Batch {
+        private final List<PantryItem> items = new ArrayList<>();
+        private final List<RowError> errors = new ArrayList<>();
+    }
+
+    /**
+     * Constructs an importer that parses on the common fork-join pool.
+     *
+     * @param store The store to add the items to
+     */
+    public PantryImporter(PantryStore store) {
+        this(store, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs an importer that parses on the given pool.
+     *
+     * @param store The store to add the items to
+     * @param pool  The pool to parse chunks on
+     */
+    public PantryImporter(PantryStore store, ForkJoinPool pool) {
+        this.store = store;
+        this.pool = pool;
+    }
+
+    /**
+     * Imports a file, reading it as JSON if its name ends in .json, .jsonl or .ndjson, and as CSV otherwise.
+     *
+     * @param userId The ID of the user whose pantry the items go into
+     * @param file   The file to import
+     * @return The number of imported items and the rejected rows
+     * @throws IOException If the file cannot be read or the items cannot be saved
+     */
+    public Result importFile(String userId, Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return importJson(userId, file);
+        }
+        return importCsv(userId, file);
+    }
+
+    /**
+     * Imports a CSV file of {@code itemName,quantity,unit,expirationDate,category} rows.
+     * A first row whose first field is {@code itemName} is taken as a header and skipped.
+     *
+     * @param userId The ID of the user whose pantry the items go into
+     * @param file   The file to import
+     * @return The number of imported items and the rejected rows
+     * @throws IOException If the file cannot be read or the items cannot be saved
+     */
+    public Result importCsv(String userId, Path file) throws IOException {
+        long start = System.nanoTime();
+        try {
+            long[] chunkStarts;
+            long size;
+            try (MappedRecordReader reader = new MappedRecordReader(file)) {
+                chunkStarts = csvChunkStarts(reader);
+                size = reader.size();
+            }
+            Batch[] batches = parse(chunkStarts.length, chunk -> {
+                long from = chunkStarts[chunk];
+                boolean last = chunk + 1 == chunkStarts.length;
+                return parseCsvChunk(file, from, last ? size : chunkStarts[chunk + 1], last, (long) chunk * CHUNK_ROWS + 1);
+            });
+            return save(userId, batches);
+        } finally {
+            IMPORT_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Imports a JSON file: an array of flat objects, or one flat object per line.
+     *
+     * @param userId The ID of the user whose pantry the items go into
+     * @param file   The file to import
+     * @return The number of imported items and the rejected rows
+     * @throws IOException If the file cannot be read or the items cannot be saved
+     * @throws IllegalArgumentException If the file is not a sequence of JSON objects
+     */
+    public Result importJson(String userId, Path file) throws IOException {
+        long start = System.nanoTime();
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            int[] spans = jsonObjectSpans(bytes);
+            int rows = spans.length / 2;
+            Batch[] batches = parse((rows + CHUNK_ROWS - 1) / CHUNK_ROWS, chunk -> {
+                Batch result = new Batch();
+                for (int row = chunk * CHUNK_ROWS; row < Math.min(rows, (chunk + 1) * CHUNK_ROWS); row++) {
+                    int from = spans[2 * row];
+                    parseJsonRow(new String(bytes, from, spans[2 * row + 1] - from, StandardCharsets.UTF_8), row + 1, result);
+                }
+                return result;
+            });
+            return save(userId, batches);
+        } finally {
+            IMPORT_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Sorts the accepted items by expiration date and adds them to the pantry in one write.
+     */
+    private Result save(String userId, Batch[] batches) throws IOException {
+        int accepted = 0;
+        List<RowError> errors = new ArrayList<>();
+        for (Batch batch : batches) {
+            accepted += batch.items.size();
+            errors.addAll(batch.errors);
+        }
+
+        // Sort primitive keys of epoch day and position rather than the items themselves:
+        // no comparator calls, and rows with the same date keep their file order
+        PantryItem[] items = new PantryItem[accepted];
+        long[] keys = new long[accepted];
+        int position = 0;
+        for (Batch batch : batches) {
+            for (PantryItem item : batch.items) {
+                items[position] = item;
+                keys[position] = (item.getExpirationDate().toEpochDay() << 32) | position;
+                position++;
+            }
+        }
+        Arrays.parallelSort(keys);
+        PantryItem[] sorted = new PantryItem[accepted];
+        for (int i = 0; i < accepted; i++) {
+            sorted[i] = items[(int) keys[i]];
+        }
+
+        store.addAll(userId, Arrays.asList(sorted));
+        ROWS_IMPORTED.add(accepted);
+        ROWS_REJECTED.add(errors.size());
+        return new Result(accepted, errors);
+    }
+
+    // Parallel parsing
+
+    /**
+     * Parses one chunk of rows.
+     */
+    private interface ChunkParser {
+        Batch parse(int chunk) throws IOException;
+    }
+
+    /**
+     * Parses chunks {@code [from, to)} into their slots of {@code results}, splitting the range in
+     * half until one chunk is left.
+     */
+    private static final class ParseTask extends RecursiveAction {
+        private final ChunkParser parser;
+        private final Batch[] results;
+        private final int from;
+        private final int to;
+
+        private ParseTask(ChunkParser parser, Batch[] results, int from, int to) {
+            this.parser = parser;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    results[from] = parser.parse(from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(parser, results, from, middle), new ParseTask(parser, results, middle, to));
+        }
+    }
+
+    private Batch[] parse(int chunks, ChunkParser parser) throws IOException {
+        Batch[] results = new Batch[chunks];
+        if (chunks > 0) {
+            try {
+                pool.invoke(new ParseTask(parser, results, 0, chunks));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return results;
+    }
+
+    // CSV
+
+    /**
+     * Finds the offset of every {@value #CHUNK_ROWS}-th record, so chunks split on record boundaries
+     * (quoted fields may span lines) and each chunk knows the number of its first row.
+     */
+    private static long[] csvChunkStarts(MappedRecordReader reader) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        long[] rows = {0};
+        reader.forEachRecordToEnd(0, record -> {
+            if (rows[0]++ % CHUNK_ROWS == 0) {
+                starts.add(record.offset());
+            }
+        });
+        return starts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static Batch parseCsvChunk(Path file, long from, long to, boolean last, long firstRow) throws IOException {
+        Batch batch = new Batch();
+        long[] row = {firstRow};
+        try (MappedRecordReader reader = new MappedRecordReader(file)) {
+            MappedRecordReader.RecordHandler handler = record -> parseCsvRow(record, row[0]++, batch);
+            if (last) {
+                reader.forEachRecordToEnd(from, handler);
+            } else {
+                reader.forEachRecord(from, to, handler);
+            }
+        }
+        return batch;
+    }
+
+    private static void parseCsvRow(MappedRecordReader.Record record, long row, Batch batch) throws IOException {
+        if (record.fieldCount() != FIELDS) {
+            if (!(record.fieldCount() == 1 && record.field(0).isBlank())) { // Skip blank lines
+                batch.errors.add(new RowError(row, "Expected " + FIELDS + " fields but found " + record.fieldCount()));
+            }
+            return;
+        }
+        if (row == 1 && record.field(0).equalsIgnoreCase("itemName")) {
+            return; // Header
+        }
+
+        int quantity;
+        try {
+            quantity = record.intField(1);
+        } catch (NumberFormatException e) {
+            batch.errors.add(new RowError(row, "Quantity must be a whole number: " + record.field(1)));
+            return;
+        }
+        LocalDate expirationDate;
+        try {
+            expirationDate = record.dateField(3);
+        } catch (DateTimeException e) {
+            batch.errors.add(new RowError(row, "Expiration date must be YYYY-MM-DD: " + record.field(3)));
+            return;
+        }
+        accept(row, record.field(0), quantity, record.field(2), expirationDate, record.field(4), batch);
+    }
+
+    // JSON
+
+    /**
+     * Finds the byte range of every top-level object, as {start, end} pairs. Brackets, commas and
+     * whitespace between objects are skipped, so both arrays and JSON Lines are accepted.
+     */
+    private static int[] jsonObjectSpans(byte[] bytes) {
+        int[] spans = new int[64];
+        int count = 0;
+        int depth = 0;
+        int start = 0;
+        boolean inString = false;
+        for (int i = 0; i < bytes.length; i++) {
+            byte b = bytes[i];
+            if (inString) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                if (depth == 0) {
+                    throw new IllegalArgumentException("Expected a JSON object at byte " + i);
+                }
+                inString = true;
+            } else if (b == '{') {
+                if (depth++ == 0) {
+                    start = i;
+                }
+            } else if (b == '}') {
+                if (depth == 0) {
+                    throw new IllegalArgumentException("Unbalanced '}' at byte " + i);
+                }
+                if (--depth == 0) {
+                    if (count + 2 > spans.length) {
+                        spans = Arrays.copyOf(spans, spans.length * 2);
+                    }
+                    spans[count++] = start;
+                    spans[count++] = i + 1;
+                }
+            } else if (depth == 0 && b != '[' && b != ']' && b != ',' && !Character.isWhitespace(b)) {
+                throw new IllegalArgumentException("Expected a JSON object at byte " + i);
+            }
+        }
+        if (depth != 0 || inString) {
+            throw new IllegalArgumentException("Unterminated JSON object at byte " + start);
+        }
+        return Arrays.copyOf(spans, count);
+    }
+
+    private static void parseJsonRow(String json, long row, Batch batch) {
+        Map<String, String> fields;
+        try {
+            fields = Json.parseObject(json);
+        } catch (IllegalArgumentException e) {
+            batch.errors.add(new RowError(row, e.getMessage()));
+            return;
+        }
+
+        int quantity;
+        try {
+            quantity = Integer.parseInt(String.valueOf(fields.get("quantity")));
+        } catch (NumberFormatException e) {
+            batch.errors.add(new RowError(row, "Quantity must be a whole number: " + fields.get("quantity")));
+            return;
+        }
+        LocalDate expirationDate;
+        try {
+            expirationDate = LocalDate.parse(String.valueOf(fields.get("expirationDate")));
+        } catch (DateTimeException e) {
+            batch.errors.add(new RowError(row, "Expiration date must be YYYY-MM-DD: " + fields.get("expirationDate")));
+            return;
+        }
+        accept(row, fields.get("itemName"), quantity, fields.get("unit"), expirationDate, fields.get("category"), batch);
+    }
+
+    // Validation
+
+    /**
+     * Applies the checks shared by both formats and keeps the item if it passes.
+     */
+    private static void accept(long row, String itemName, int quantity, String unit, LocalDate expirationDate,
+                               String category, Batch batch) {
+        String problem = null;
+        if (itemName == null || itemName.isBlank()) {
+            problem = "Missing item name";
+        } else if (quantity < 0) {
+            problem = "Quantity cannot be negative: " + quantity;
+        } else if (unit == null || unit.isBlank()) {
+            problem = "Missing unit";
+        } else if (category == null || category.isBlank()) {
+            problem = "Missing category";
+        }
+        if (problem != null) {
+            batch.errors.add(new RowError(row, problem));
+            return;
+        }
+        batch.items.add(new PantryItem(itemName.strip(), quantity, unit.strip(), expirationDate, category.strip()));
+    }
+}
@@ -12,9 +12,11 @@ public class PantryItem {
     // Attributes
     private String itemName;   // The name of the pantry item (e.g., "Milk")
     private int quantity;      // The quantity of the item in the pantry
-    private String unit;       // The unit of measurement for the item (e.g., "liters", "kg")
+    private int unit;          // SymbolTable id of the unit of measurement (e.g., "liters", "kg")
     private LocalDate expirationDate; // The expiration date of the item
-    private String category;   // The category of the item (e.g., "Dairy")
+    private int category;      // SymbolTable id of the category (e.g., "Dairy")
+    private String unitName;     // The unit, when the symbol table was too full to intern it
+    private String categoryName; // The category, when the symbol table was too full to intern it
 
     /**
      * Constructs a PantryItem with the specified details.
@@ -26,11 +28,38 @@ public class PantryItem {
      * @param category The category of the item
      */
     public PantryItem(String itemName, int quantity, String unit, LocalDate expirationDate, String category) {
+        this(itemName, quantity, SymbolTable.id(unit), expirationDate, SymbolTable.id(category));
+        this.unitName = this.unit == SymbolTable.UNINTERNED ? unit : null;
+        this.categoryName = this.category == SymbolTable.UNINTERNED ? category : null;
+    }
+
+    /**
+     * Constructs a PantryItem from already interned unit and category ids, neither of which may be
+     * {@link SymbolTable#UNINTERNED}.
+     *
+     * @param itemName The name of the pantry item
+     * @param quantity The quantity of the item
+     * @param unitId The {@link SymbolTable} id of the unit of measurement
+     * @param expirationDate The expiration date of the item
+     * @param categoryId The {@link SymbolTable} id of the category
+     */
+    public PantryItem(String itemName, int quantity, int unitId, LocalDate expirationDate, int categoryId) {
         this.itemName = itemName;
         this.quantity = quantity;
-        this.unit = unit;
+        this.unit = unitId;
         this.expirationDate = expirationDate;
-        this.category = category;
+        this.category = categoryId;
+    }
+
+    /**
+     * Constructs a copy of a pantry item.
+     *
+     * @param item The item to copy
+     */
+    public PantryItem(PantryItem item) {
+        this(item.getItemName(), item.getQuantity(), item.getUnitId(), item.getExpirationDate(), item.getCategoryId());
+        this.unitName = unit == SymbolTable.UNINTERNED ? item.getUnit() : null;
+        this.categoryName = category == SymbolTable.UNINTERNED ? item.getCategory() : null;
     }
 
     /**
@@ -57,6 +86,16 @@ public class PantryItem {
      * @return the unit of measurement for the pantry item
      */
     public String getUnit() {
+        return unit == SymbolTable.UNINTERNED ? unitName : SymbolTable.name(unit);
+    }
+
+    /**
+     * Returns the {@link SymbolTable} id of the unit, for cheap comparison and grouping.
+     * Units the table had no room for share {@link SymbolTable#UNINTERNED}; compare those by {@link #getUnit()}.
+     *
+     * @return the unit id
+     */
+    public int getUnitId() {
         return unit;
     }
 
@@ -75,6 +114,17 @@ public class PantryItem {
      * @return the category of the pantry item
      */
     public String getCategory() {
+        return category == SymbolTable.UNINTERNED ? categoryName : SymbolTable.name(category);
+    }
+
+    /**
+     * Returns the {@link SymbolTable} id of the category, for cheap comparison and grouping.
+     * Categories the table had no room for share {@link SymbolTable#UNINTERNED}; compare those by
+     * {@link #getCategory()}.
+     *
+     * @return the category id
+     */
+    public int getCategoryId() {
         return category;
     }
 
@@ -103,7 +153,8 @@ public class PantryItem {
      * @param unit The unit of measurement for the pantry item
      */
     public void setUnit(String unit) {
-        this.unit = unit;
+        this.unit = SymbolTable.id(unit);
+        this.unitName = this.unit == SymbolTable.UNINTERNED ? unit : null;
     }
 
     /**
@@ -121,7 +172,8 @@ public class PantryItem {
      * @param category The category of the pantry item
      */
     public void setCategory(String category) {
-        this.category = category;
+        this.category = SymbolTable.id(category);
+        this.categoryName = this.category == SymbolTable.UNINTERNED ? category : null;
     }
 
     /**
@@ -132,10 +184,10 @@ public class PantryItem {
      * @throws IllegalArgumentException If the resulting quantity would be negative
      */
     public void updateQuantity(int amount) {
-        if (this.quantity + amount < 0) {
+        if (getQuantity() + amount < 0) {
             throw new IllegalArgumentException("Quantity cannot be negative.");
         }
-        this.quantity += amount;
+        setQuantity(getQuantity() + amount);
     }
 
     /**
@@ -144,7 +196,18 @@ public class PantryItem {
      * @return true if the item is expired, false otherwise
      */
     public boolean isExpired() {
-        return LocalDate.now().isAfter(expirationDate);
+        return isExpired(LocalDate.now());
+    }
+
+    /**
+     * Checks if the pantry item is expired as of the given date.
+     * Callers checking many items should read the clock once and pass it in.
+     *
+     * @param today The date to check against
+     * @return true if the item expired before the given date, false otherwise
+     */
+    public boolean isExpired(LocalDate today) {
+        return today.isAfter(getExpirationDate());
     }
 
     /**
@@ -155,11 +218,11 @@ public class PantryItem {
     @Override
     public String toString() {
         return "PantryItem{" +
-                "itemName='" + itemName + '\'' +
-                ", quantity=" + quantity +
-                ", unit='" + unit + '\'' +
-                ", expirationDate=" + expirationDate +
-                ", category='" + category + '\'' +
+                "itemName='" + getItemName() + '\'' +
+                ", quantity=" + getQuantity() +
+                ", unit='" + getUnit() + '\'' +
+                ", expirationDate=" + getExpirationDate() +
+                ", category='" + getCategory() + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,516 @@
+package pantrypal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Keeps running totals of each user's pantry: the number of items and the sum of their quantities,
+ * overall, by category, by unit and by expiration date. Summaries such as "how many Dairy items" or
+ * "how much expires this week" are read from the totals instead of from the items.
+ *
+ * <p>The rollups listen to their {@link PantryStore}. An add costs O(1) per item. A removal or
+ * quantity change costs O(k) for the k items with that name, however large the pantry is. A user's totals
+ * are built from one pass over their pantry, read as {@link PantryColumns}, the first time they are needed.</p>
+ *
+ * <p>Totals are saved next to the pantry file whenever the store writes a snapshot, after each
+ * compaction and on exit, in {@code <pantry>.rollups.csv}, with the length and a checksum of the pantry
+ * log they match, so the next run can show them without reading any pantry. Each user's items are saved
+ * grouped by name, so removals and quantity changes stay incremental after a reload. Saved totals for a
+ * log that has changed since, by another process, are ignored.</p>
+ *
+ * <p>Record formats:</p>
+ * <pre>
+ * #,logLength,checksum                                          (header)
+ * userId,itemName,category,unit,expirationDate,quantity,count   (count items alike but for their positions)
+ * </pre>
+ */
+public class PantryRollups implements PantryStore.Listener {
+    private static final String HEADER = "#";
+    private static final byte[] HEADER_BYTES = HEADER.getBytes(StandardCharsets.UTF_8);
+    private static final LatencyHistogram BUILD_LATENCY = Metrics.histogram("rollups.build");
+    private static final Map<PantryStore, PantryRollups> rollups = new HashMap<>();
+
+    private final PantryStore store;
+    private final Path path;                                      // Where the totals are saved
+    private final Map<String, UserTotals> users = new HashMap<>(); // userId -> that user's totals
+    private boolean loaded;                                       // True once saved totals have been read
+    private boolean dirty;                                        // True if the totals changed since they were saved
+
+    /**
+     * An item count and the sum of the items' quantities.
+     */
+    public static final class Totals {
+        private long count;
+        private long quantity;
+
+        private Totals() {
+        }
+
+        private Totals(long count, long quantity) {
+            this.count = count;
+            this.quantity = quantity;
+        }
+
+        /**
+         * @return The number of items
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The sum of the items' quantities
+         */
+        public long getQuantity() {
+            return quantity;
+        }
+
+        private void add(long count, long quantity) {
+            this.count += count;
+            this.quantity += quantity;
+        }
+
+        private Totals copy() {
+            return new Totals(count, quantity);
+        }
+
+        @Override
+        public String toString() {
+            return count + " items, quantity " + quantity;
+        }
+    }
+
+    /**
+     * The totals a home screen shows, read together.
+     */
+    public static final class Overview {
+        private final Totals total;
+        private final Totals expired;
+        private final Totals expiringThisWeek;
+        private final SortedMap<String, Totals> byCategory;
+
+        private Overview(Totals total, Totals expired, Totals expiringThisWeek, SortedMap<String, Totals> byCategory) {
+            this.total = total;
+            this.expired = expired;
+            this.expiringThisWeek = expiringThisWeek;
+            this.byCategory = byCategory;
+        }
+
+        /**
+         * @return Every item in the pantry
+         */
+        public Totals getTotal() {
+            return total;
+        }
+
+        /**
+         * @return The items that expired before the overview's date
+         */
+        public Totals getExpired() {
+            return expired;
+        }
+
+        /**
+         * @return The items expiring from the overview's date to the end of its week, on Sunday
+         */
+        public Totals getExpiringThisWeek() {
+            return expiringThisWeek;
+        }
+
+        /**
+         * @return The totals of each category, by category name
+         */
+        public SortedMap<String, Totals> getByCategory() {
+            return byCategory;
+        }
+    }
+
+    /**
+     * One user's totals, and their items, for undoing removals and quantity changes.
+     */
+    private static final class UserTotals {
+        private final Totals total = new Totals();
+        private final Map<String, Totals> byCategory = new HashMap<>();    // Category -> totals
+        private final Map<String, Totals> byUnit = new HashMap<>();        // Unit -> totals
+        private final TreeMap<Integer, Totals> byDay = new TreeMap<>();    // Expiration epoch day -> totals
+        private final Map<String, List<Held>> items = new HashMap<>(); // Item name -> the items' shares
+    }
+
+    /**
+     * The share of the totals of {@code count} items with the same name and fields. Categories and units
+     * are kept by name, since names the {@link SymbolTable} had no room for all share one id.
+     */
+    private static final class Held {
+        private final String category;
+        private final String unit;
+        private final int epochDay;
+        private int quantity;  // Of each item
+        private final int count;
+
+        private Held(String category, String unit, int epochDay, int quantity, int count) {
+            this.category = category;
+            this.unit = unit;
+            this.epochDay = epochDay;
+            this.quantity = quantity;
+            this.count = count;
+        }
+
+        private Held(PantryItem item) {
+            this(String.valueOf(item.getCategory()), String.valueOf(item.getUnit()),
+                    (int) item.getExpirationDate().toEpochDay(), item.getQuantity(), 1);
+        }
+
+        private Held(PantryColumns columns, int row) {
+            this(String.valueOf(columns.category(row)), String.valueOf(columns.unit(row)), columns.epochDay(row),
+                    columns.quantity(row), 1);
+        }
+
+        private long totalQuantity() {
+            return (long) quantity * count;
+        }
+    }
+
+    /**
+     * The fields that {@link Held} shares are grouped by when saved.
+     */
+    private record Group(String category, String unit, int epochDay, int quantity) {
+    }
+
+    private PantryRollups(PantryStore store) {
+        this.store = store;
+        Path filePath = store.getFilePath();
+        this.path = filePath.resolveSibling(filePath.getFileName().toString().replaceFirst("\\.csv$", "") + ".rollups.csv");
+    }
+
+    /**
+     * Returns the rollups for a store, creating them and starting to listen to the store on first use.
+     *
+     * @param store The store holding the pantries
+     * @return The rollups listening to that store
+     */
+    public static synchronized PantryRollups forStore(PantryStore store) {
+        return rollups.computeIfAbsent(store, key -> {
+            PantryRollups rollup = new PantryRollups(key);
+            key.addListener(rollup);
+            return rollup;
+        });
+    }
+
+    /**
+     * Returns the totals of every item in a user's pantry.
+     *
+     * @param userId The ID of the user
+     * @return The totals
+     * @throws IOException If the user's totals have to be built and the pantry cannot be read
+     */
+    public Totals total(String userId) throws IOException {
+        synchronized (store) { // Store lock first, as for listener calls
+            synchronized (this) {
+                return state(userId).total.copy();
+            }
+        }
+    }
+
+    /**
+     * Returns the totals of each category in a user's pantry.
+     *
+     * @param userId The ID of the user
+     * @return The totals by category name
+     * @throws IOException If the user's totals have to be built and the pantry cannot be read
+     */
+    public SortedMap<String, Totals> byCategory(String userId) throws IOException {
+        synchronized (store) {
+            synchronized (this) {
+                return byName(state(userId).byCategory);
+            }
+        }
+    }
+
+    /**
+     * Returns the totals of each unit in a user's pantry.
+     *
+     * @param userId The ID of the user
+     * @return The totals by unit
+     * @throws IOException If the user's totals have to be built and the pantry cannot be read
+     */
+    public SortedMap<String, Totals> byUnit(String userId) throws IOException {
+        synchronized (store) {
+            synchronized (this) {
+                return byName(state(userId).byUnit);
+            }
+        }
+    }
+
+    /**
+     * Returns the totals of each week in which some of a user's items expire.
+     *
+     * @param userId The ID of the user
+     * @return The totals by the Monday starting each week, earliest first
+     * @throws IOException If the user's totals have to be built and the pantry cannot be read
+     */
+    public SortedMap<LocalDate, Totals> byExpiryWeek(String userId) throws IOException {
+        synchronized (store) {
+            synchronized (this) {
+                SortedMap<LocalDate, Totals> weeks = new TreeMap<>();
+                for (Map.Entry<Integer, Totals> day : state(userId).byDay.entrySet()) {
+                    LocalDate monday = LocalDate.ofEpochDay(day.getKey()).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                    weeks.computeIfAbsent(monday, week -> new Totals()).add(day.getValue().count, day.getValue().quantity);
+                }
+                return weeks;
+            }
+        }
+    }
+
+    /**
+     * Returns the totals of a user's items expiring between two dates, inclusive.
+     *
+     * @param userId The ID of the user
+     * @param from   The first expiration date to include
+     * @param to     The last expiration date to include
+     * @return The totals
+     * @throws IOException If the user's totals have to be built and the pantry cannot be read
+     */
+    public Totals expiringBetween(String userId, LocalDate from, LocalDate to) throws IOException {
+        synchronized (store) {
+            synchronized (this) {
+                return sum(state(userId).byDay.subMap((int) from.toEpochDay(), true, (int) to.toEpochDay(), true));
+            }
+        }
+    }
+
+    /**
+     * Returns the totals a home screen shows for a user, as of a date.
+     *
+     * @param userId The ID of the user
+     * @param today  The date to count expired items and this week's expiries from
+     * @return The overview
+     * @throws IOException If the user's totals have to be built and the pantry cannot be read
+     */
+    public Overview overview(String userId, LocalDate today) throws IOException {
+        synchronized (store) {
+            synchronized (this) {
+                UserTotals state = state(userId);
+                LocalDate sunday = today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+                return new Overview(state.total.copy(),
+                        sum(state.byDay.headMap((int) today.toEpochDay(), false)),
+                        sum(state.byDay.subMap((int) today.toEpochDay(), true, (int) sunday.toEpochDay(), true)),
+                        byName(state.byCategory));
+            }
+        }
+    }
+
+    /**
+     * Saves every user's totals, if they changed since they were last saved or loaded.
+     * The store does this whenever it writes a snapshot.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void save() throws IOException {
+        synchronized (store) {
+            synchronized (this) {
+                // Writes queued items, and resets the totals if another process changed the log, so the
+                // length stamped below is exactly what the totals reflect
+                long logLength = store.refresh();
+                Path logPath = store.getFilePath();
+                if (!dirty) {
+                    return;
+                }
+                if (!Files.exists(logPath)) {
+                    return; // No pantry for the totals to match
+                }
+                StringBuilder records = new StringBuilder();
+                records.append(CsvCodec.record(HEADER, logLength,
+                        logLength > 0 ? PantrySnapshot.checksumLog(logPath, logLength) : 0));
+                for (Map.Entry<String, UserTotals> user : users.entrySet()) {
+                    for (Map.Entry<String, List<Held>> name : user.getValue().items.entrySet()) {
+                        Map<Group, Integer> groups = new LinkedHashMap<>();
+                        for (Held held : name.getValue()) {
+                            groups.merge(new Group(held.category, held.unit, held.epochDay, held.quantity), held.count,
+                                    Integer::sum);
+                        }
+                        for (Map.Entry<Group, Integer> group : groups.entrySet()) {
+                            Group fields = group.getKey();
+                            records.append(CsvCodec.record(user.getKey(), name.getKey(), fields.category(), fields.unit(),
+                                    LocalDate.ofEpochDay(fields.epochDay()), fields.quantity(), group.getValue()));
+                        }
+                    }
+                }
+
+                Path tempPath = Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp");
+                try {
+                    Files.writeString(tempPath, records, StandardCharsets.UTF_8);
+                    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tempPath); // Already moved into place unless the write failed
+                }
+                dirty = false;
+            }
+        }
+    }
+
+    @Override
+    public void snapshotWritten() {
+        try {
+            save(); // The snapshot and a freshly compacted log are what the next run starts from
+        } catch (IOException e) {
+            System.err.println("Error saving pantry rollups: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void reset() {
+        users.clear(); // Rebuilt from the store when next needed
+        dirty = false;
+    }
+
+    @Override
+    public synchronized void itemsAdded(String userId, List<PantryItem> items) {
+        UserTotals state = users.get(userId);
+        if (state == null) {
+            return; // Built from the store when first needed
+        }
+        for (PantryItem item : items) {
+            Held held = new Held(item);
+            apply(state, held, held.count, held.totalQuantity());
+            state.items.computeIfAbsent(item.getItemName(), name -> new ArrayList<>(1)).add(held);
+        }
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void itemsRemoved(String userId, String itemName) {
+        UserTotals state = users.get(userId);
+        if (state == null) {
+            return;
+        }
+        List<Held> removed = state.items.remove(itemName);
+        if (removed != null) {
+            for (Held held : removed) {
+                apply(state, held, -held.count, -held.totalQuantity());
+            }
+        }
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void quantityChanged(String userId, String itemName, int quantity) {
+        UserTotals state = users.get(userId);
+        if (state == null) {
+            return;
+        }
+        for (Held held : state.items.getOrDefault(itemName, List.of())) {
+            apply(state, held, 0, (long) (quantity - held.quantity) * held.count);
+            held.quantity = quantity;
+        }
+        dirty = true;
+    }
+
+    /**
+     * Returns a user's totals, loading saved totals on first use and otherwise building the user's
+     * from one pass over their pantry. Must be called with the store lock held, so no change slips in
+     * between the read and the listener.
+     */
+    private UserTotals state(String userId) throws IOException {
+        store.refresh(); // Resets the totals if another process changed the log
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+        UserTotals state = users.get(userId);
+        if (state != null) {
+            return state;
+        }
+
+        long start = System.nanoTime();
+        UserTotals built = new UserTotals();
+        PantryColumns columns = store.readColumns(userId); // Primitive columns; no PantryItem per row
+        for (int row = 0; row < columns.size(); row++) {
+            Held held = new Held(columns, row);
+            apply(built, held, held.count, held.totalQuantity());
+            built.items.computeIfAbsent(columns.name(row), name -> new ArrayList<>(1)).add(held);
+        }
+        users.put(userId, built);
+        dirty = true;
+        BUILD_LATENCY.recordSince(start);
+        return built;
+    }
+
+    /**
+     * Reads the saved totals, if they match the pantry log as it is now.
+     */
+    private void load() throws IOException {
+        Path logPath = store.getFilePath();
+        long logLength = store.refresh(); // The part of the log the store has indexed and announced
+        try (MappedRecordReader reader = MappedRecordReader.openIfExists(path)) {
+            if (reader == null) {
+                return;
+            }
+            MappedRecordReader.Record header = reader.recordAt(0);
+            if (header == null || header.fieldCount() != 3 || !header.fieldEquals(0, HEADER_BYTES)) {
+                return;
+            }
+            try {
+                if (Long.parseLong(header.field(1)) != logLength
+                        || (logLength > 0 && Long.parseLong(header.field(2)) != PantrySnapshot.checksumLog(logPath, logLength))) {
+                    return; // Saved for a different log
+                }
+            } catch (NumberFormatException e) {
+                return;
+            }
+
+            Map<String, UserTotals> saved = new HashMap<>();
+            reader.forEachRecord(header.length() + 1, reader.size(), record -> {
+                if (record.fieldCount() != 7) {
+                    throw new IllegalStateException("Not a rollups record at " + record.offset());
+                }
+                UserTotals state = saved.computeIfAbsent(record.field(0), userId -> new UserTotals());
+                Held held = new Held(SymbolTable.canonical(record.field(2)), SymbolTable.canonical(record.field(3)),
+                        (int) record.dateField(4).toEpochDay(), record.intField(5), record.intField(6));
+                apply(state, held, held.count, held.totalQuantity());
+                state.items.computeIfAbsent(record.field(1), name -> new ArrayList<>(1)).add(held);
+            });
+            users.putAll(saved);
+        } catch (RuntimeException e) {
+            users.clear(); // A damaged file; build from the store instead
+        }
+    }
+
+    /**
+     * Adds or subtracts one item's share of the totals, dropping totals that reach zero items.
+     */
+    private static void apply(UserTotals state, Held held, int count, long quantity) {
+        state.total.add(count, quantity);
+        add(state.byCategory, held.category, count, quantity);
+        add(state.byUnit, held.unit, count, quantity);
+        add(state.byDay, held.epochDay, count, quantity);
+    }
+
+    private static <K> void add(Map<K, Totals> totals, K key, int count, long quantity) {
+        Totals bucket = totals.computeIfAbsent(key, k -> new Totals());
+        bucket.add(count, quantity);
+        if (bucket.count == 0) {
+            totals.remove(key);
+        }
+    }
+
+    private static Totals sum(Map<Integer, Totals> buckets) {
+        Totals sum = new Totals();
+        for (Totals bucket : buckets.values()) {
+            sum.add(bucket.count, bucket.quantity);
+        }
+        return sum;
+    }
+
+    private static SortedMap<String, Totals> byName(Map<String, Totals> totals) {
+        SortedMap<String, Totals> byName = new TreeMap<>();
+        for (Map.Entry<String, Totals> entry : totals.entrySet()) {
+            byName.put(entry.getKey(), entry.getValue().copy());
+        }
+        return byName;
+    }
+}
@@ -1,13 +1,12 @@
 package pantrypal;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
-import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.List;
 
 /**
  * PantryScreen is the screen where users can manage their pantry items.
@@ -19,11 +18,10 @@ import java.util.List;
 
 @SuppressWarnings("serial")
 public class PantryScreen extends JFrame {
-    private DefaultTableModel pantryTableModel; // Table model for pantry items
+    private static final int SUGGESTIONS = 6; // Existing item names offered while typing a new one
+    private PantryTableModel pantryTableModel; // Pages pantry items in from the store
     private JTable pantryTable; // Displays pantry items
-    private JButton addItemButton, removeItemButton, checkExpirationButton, backToHomeButton;
-    private List<PantryItem> pantryItems; // List of pantry items
-    @SuppressWarnings("unused")
+    private JButton addItemButton, removeItemButton, checkExpirationButton, parLevelButton, backToHomeButton;
 	private PantryApp app;  // Reference to PantryApp for managing user data
 
     /**
@@ -41,19 +39,20 @@ public class PantryScreen extends JFrame {
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout());
 
-        // Initialize pantryItems from current user's pantry
-        this.pantryItems = app.getCurrentUser().viewPantry();
-
-        // Table setup
-        String[] columnNames = {"Item Name", "Quantity", "Unit", "Expiration Date", "Category"};
-        pantryTableModel = new DefaultTableModel(columnNames, 0);
+        // Table setup; rows are read from the store as they scroll into view
+        pantryTableModel = app.getService().pantryModel(app.getCurrentUser());
         pantryTable = new JTable(pantryTableModel);
         JScrollPane scrollPane = new JScrollPane(pantryTable);
 
+        // Count the current user's pantry off the EDT and size the table when it arrives
+        PantryService.onEdt(pantryTableModel.reload(), count -> { },
+                error -> JOptionPane.showMessageDialog(this, "Could not load your pantry: " + error.getMessage()));
+
         // Buttons
         addItemButton = new JButton("Add Item");
         removeItemButton = new JButton("Remove Item");
         checkExpirationButton = new JButton("Check Expiration");
+        parLevelButton = new JButton("Set Par Level");
         backToHomeButton = new JButton("Back to Home");
 
         // Button panel
@@ -61,6 +60,7 @@ public class PantryScreen extends JFrame {
         buttonPanel.add(addItemButton);
         buttonPanel.add(removeItemButton);
         buttonPanel.add(checkExpirationButton);
+        buttonPanel.add(parLevelButton);
         buttonPanel.add(backToHomeButton);
 
         // Add components to frame
@@ -72,6 +72,7 @@ public class PantryScreen extends JFrame {
         addItemButton.addActionListener(e -> openAddItemDialog());
         removeItemButton.addActionListener(e -> removeSelectedItem());
         checkExpirationButton.addActionListener(e -> highlightExpiredItems());
+        parLevelButton.addActionListener(e -> setParLevelOfSelectedItem());
 
         // Back to Home button action
         backToHomeButton.addActionListener(e -> {
@@ -84,11 +85,13 @@ public class PantryScreen extends JFrame {
     /**
      * Opens a dialog to allow the user to add a new pantry item.
      * The user inputs the item name, quantity, unit, expiration date, and category.
+     * While the name is typed, matching names from the user's pantry and shopping list are
+     * suggested below the fields; clicking one fills in the name.
      * After validation, the item is added to the pantry and displayed in the table.
      */
     
     private void openAddItemDialog() {
-        JPanel panel = new JPanel(new GridLayout(5, 2));
+        JPanel fields = new JPanel(new GridLayout(5, 2));
 
         // Input fields
         JTextField itemNameField = new JTextField();
@@ -98,16 +101,47 @@ public class PantryScreen extends JFrame {
         JTextField categoryField = new JTextField();
 
         // Add labels and fields to the panel
-        panel.add(new JLabel("Item Name:"));
-        panel.add(itemNameField);
-        panel.add(new JLabel("Quantity:"));
-        panel.add(quantityField);
-        panel.add(new JLabel("Unit:"));
-        panel.add(unitField);
-        panel.add(new JLabel("Expiration Date (YYYY-MM-DD):"));
-        panel.add(expirationDateField);
-        panel.add(new JLabel("Category:"));
-        panel.add(categoryField);
+        fields.add(new JLabel("Item Name:"));
+        fields.add(itemNameField);
+        fields.add(new JLabel("Quantity:"));
+        fields.add(quantityField);
+        fields.add(new JLabel("Unit:"));
+        fields.add(unitField);
+        fields.add(new JLabel("Expiration Date (YYYY-MM-DD):"));
+        fields.add(expirationDateField);
+        fields.add(new JLabel("Category:"));
+        fields.add(categoryField);
+
+        // Suggestions for the name, looked up off the EDT as it changes
+        DefaultListModel<String> suggestions = new DefaultListModel<>();
+        JList<String> suggestionList = new JList<>(suggestions);
+        suggestionList.setVisibleRowCount(SUGGESTIONS);
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        suggestionList.addListSelectionListener(e -> {
+            String selected = suggestionList.getSelectedValue();
+            if (!e.getValueIsAdjusting() && selected != null) {
+                itemNameField.setText(selected);
+            }
+        });
+        itemNameField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                suggestItemNames(itemNameField, suggestions);
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                suggestItemNames(itemNameField, suggestions);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        panel.add(fields, BorderLayout.CENTER);
+        panel.add(new JScrollPane(suggestionList), BorderLayout.SOUTH);
 
         int result = JOptionPane.showConfirmDialog(this, panel, "Add Pantry Item", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
@@ -118,51 +152,103 @@ public class PantryScreen extends JFrame {
                 LocalDate expirationDate = LocalDate.parse(expirationDateField.getText(), DateTimeFormatter.ISO_LOCAL_DATE);
                 String category = categoryField.getText();
 
-                // Create PantryItem and add to list
-                User.addToPantry("23",itemName, String.valueOf(quantity), unit, expirationDate, category);
+                // Save the item off the EDT, then add it to the table
                 PantryItem item = new PantryItem(itemName, quantity, unit, expirationDate, category);
-                pantryItems.add(item);
-
-                // Update table
-                pantryTableModel.addRow(new Object[] {
-                    item.getItemName(), item.getQuantity(), item.getUnit(),
-                    item.getExpirationDate().toString(), item.getCategory()
-                });
+                PantryService.onEdt(pantryTableModel.add(item), added -> { },
+                        error -> JOptionPane.showMessageDialog(this, "Could not save the item: " + error.getMessage()));
             } catch (NumberFormatException | DateTimeParseException ex) {
                 JOptionPane.showMessageDialog(this, "Invalid input. Please check your fields.");
-            } catch (IOException e) {
-                throw new RuntimeException(e);
             }
         }
     }
 
     /**
-     * Removes the selected pantry item from the list and updates the table.
+     * Looks up names matching the name field off the EDT and shows them, unless the field has
+     * changed again by the time they arrive.
+     */
+
+    private void suggestItemNames(JTextField itemNameField, DefaultListModel<String> suggestions) {
+        String query = itemNameField.getText();
+        if (query.isBlank()) {
+            suggestions.clear();
+            return;
+        }
+        PantryService.onEdt(app.getService().suggestItemNames(app.getCurrentUser(), query, SUGGESTIONS), names -> {
+            if (!query.equals(itemNameField.getText())) {
+                return; // Typed over while this lookup ran
+            }
+            suggestions.clear();
+            suggestions.addAll(names);
+        }, error -> suggestions.clear());
+    }
+
+    /**
+     * Removes the selected pantry item from the saved pantry, the list and the table.
      * If no item is selected, an error message is shown.
      */
     
     private void removeSelectedItem() {
         int selectedRow = pantryTable.getSelectedRow();
         if (selectedRow >= 0) {
-            pantryItems.remove(selectedRow); // Remove from list
-            pantryTableModel.removeRow(selectedRow); // Remove from table
+            PantryItem selected = pantryTableModel.getItemAt(selectedRow);
+            if (selected == null) {
+                JOptionPane.showMessageDialog(this, "That item is still loading. Please try again.");
+                return;
+            }
+
+            // Remove from the saved pantry off the EDT; the store drops every item with this name
+            PantryService.onEdt(pantryTableModel.removeAll(selected.getItemName()), removed -> { },
+                    error -> JOptionPane.showMessageDialog(this, "Could not remove the item: " + error.getMessage()));
         } else {
             JOptionPane.showMessageDialog(this, "Please select an item to remove.");
         }
     }
 
+    /**
+     * Asks for the quantity of the selected item to keep on hand. Falling below it puts the
+     * item on the user's low-stock suggestions.
+     */
+
+    private void setParLevelOfSelectedItem() {
+        int selectedRow = pantryTable.getSelectedRow();
+        if (selectedRow < 0) {
+            JOptionPane.showMessageDialog(this, "Please select an item to set its par level.");
+            return;
+        }
+        PantryItem selected = pantryTableModel.getItemAt(selectedRow);
+        if (selected == null) {
+            JOptionPane.showMessageDialog(this, "That item is still loading. Please try again.");
+            return;
+        }
+
+        String input = JOptionPane.showInputDialog(this, "Quantity of " + selected.getItemName()
+                + " to keep on hand (0 for none):");
+        if (input == null) {
+            return;
+        }
+        try {
+            int parLevel = Integer.parseInt(input.trim());
+            PantryService.onEdt(app.getService().setParLevel(app.getCurrentUser(), selected.getItemName(), parLevel),
+                    done -> { },
+                    error -> JOptionPane.showMessageDialog(this, "Could not set the par level: " + error.getMessage()));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid par level. Please enter a whole number.");
+        }
+    }
+
     /**
      * Highlights the pantry items that have expired.
      * The expired items are selected in the table for easy identification.
      */
     
     private void highlightExpiredItems() {
-        for (int i = 0; i < pantryItems.size(); i++) {
-            PantryItem item = pantryItems.get(i);
-            if (item.isExpired()) {
-                pantryTable.setRowSelectionInterval(i, i); // Select expired item
+        // Only expiration dates are read, off the EDT; the rows themselves stay paged
+        PantryService.onEdt(pantryTableModel.expiredRows(LocalDate.now()), expiredRows -> {
+            pantryTable.clearSelection();
+            for (int row : expiredRows) {
+                pantryTable.addRowSelectionInterval(row, row); // Select expired item, keeping earlier ones
             }
-        }
+        }, error -> JOptionPane.showMessageDialog(this, "Could not check expiration dates: " + error.getMessage()));
     }
 }
 
@@ -0,0 +1,438 @@
+package pantrypal;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves PantryPal to many users at once over a local HTTP/JSON API, without the Swing UI.
+ * Every request runs on its own virtual thread, so blocking file I/O never ties up a platform thread.
+ *
+ * <p>Clients log in with {@code POST /api/login} and send the returned token as
+ * {@code Authorization: Bearer <token>}. Each token is a session holding its own user, in place of
+ * {@link PantryApp}'s single current user; sessions expire after {@code pantrypal.server.sessionMinutes}
+ * minutes without a request. Request bodies are flat JSON objects.</p>
+ *
+ * <pre>
+ * POST   /api/register        {"username", "password"}
+ * POST   /api/login           {"username", "password"}                     -> {"token"}
+ * POST   /api/logout
+ * GET    /api/pantry                                                       -> [item]
+ * POST   /api/pantry          {"itemName", "quantity", "unit", "expirationDate", "category"}
+ * PUT    /api/pantry          {"itemName", "quantity"}
+ * DELETE /api/pantry?name=
+ * GET    /api/pantry/summary                                               -> {"items", "quantity", "expired", "expiringThisWeek"}
+ * GET    /api/pantry/categories                                            -> [{"category", "items", "quantity"}]
+ * GET    /api/shopping                                                     -> [item]
+ * POST   /api/shopping        {"itemName", "quantity", "priority"}
+ * DELETE /api/shopping?name=  (no name clears the list)
+ * GET    /api/notifications                                                -> [message]
+ * DELETE /api/notifications
+ * GET    /metrics                                                          -> text
+ * </pre>
+ */
+public class PantryServer {
+    /**
+     * The port used when none is given.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final Duration SESSION_TIMEOUT =
+            Duration.ofMinutes(Long.getLong("pantrypal.server.sessionMinutes", 30));
+    private static final int SWEEP_EVERY = 256; // Logins between sweeps of expired sessions
+    private static final LatencyHistogram REQUEST_LATENCY = Metrics.histogram("server.request");
+    private static final LongAdder REQUEST_ERRORS = Metrics.counter("server.errors");
+
+    private final PantryApp app;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>(); // Token -> session
+    private final AtomicInteger loginsSinceSweep = new AtomicInteger();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * One logged-in client.
+     */
+    private static final class Session {
+        private final User user;
+        private volatile long lastSeen; // System.nanoTime() of the last request
+
+        private Session(User user) {
+            this.user = user;
+            this.lastSeen = System.nanoTime();
+        }
+
+        private boolean isExpired(long now) {
+            return now - lastSeen > SESSION_TIMEOUT.toNanos();
+        }
+    }
+
+    /**
+     * A request that cannot be served, answered with an HTTP status and a message.
+     */
+    private static final class HttpError extends RuntimeException {
+        private final int status;
+
+        private HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Constructs a server. Call {@link #start()} to begin accepting requests.
+     * Set {@code sun.net.httpserver.nodelay} to {@code true} before constructing the first server, or every
+     * keep-alive response waits for the client's delayed ACK; {@link PantryApp#main} does.
+     *
+     * @param app     The application whose users and data are served
+     * @param address The address to listen on; port 0 picks a free port
+     * @throws IOException If the address cannot be bound
+     */
+    public PantryServer(PantryApp app, InetSocketAddress address) throws IOException {
+        this.app = app;
+        this.server = HttpServer.create(address, 1024);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.createContext("/metrics", this::handle);
+        Metrics.gauge("server.sessions", sessions::size);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to the given time for running ones to finish.
+     *
+     * @param delaySeconds The longest time to wait
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * @return The port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return The number of live sessions
+     */
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            int status = 200;
+            String body;
+            String contentType = "application/json";
+            try {
+                if (exchange.getRequestURI().getPath().equals("/metrics")) {
+                    body = Metrics.dump();
+                    contentType = "text/plain";
+                } else {
+                    body = route(exchange);
+                }
+            } catch (HttpError e) {
+                status = e.status;
+                body = Json.object("error", e.getMessage());
+            } catch (IllegalArgumentException | IllegalStateException | DateTimeException e) {
+                status = 400;
+                body = Json.object("error", e.getMessage());
+            } catch (IOException e) {
+                status = 500;
+                body = Json.object("error", "Storage error: " + e.getMessage());
+            } catch (UncheckedIOException e) {
+                status = 500;
+                body = Json.object("error", "Storage error: " + e.getCause().getMessage());
+            }
+            if (status >= 400) {
+                REQUEST_ERRORS.increment();
+            }
+
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            REQUEST_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Dispatches a request under /api/ and returns the JSON response body.
+     */
+    private String route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        switch (path) {
+            case "/api/register" -> {
+                requireMethod(method, "POST");
+                Map<String, String> request = readBody(exchange);
+                User user = app.registerUser(required(request, "username"), required(request, "password"));
+                return Json.object("username", user.getUsername());
+            }
+            case "/api/login" -> {
+                requireMethod(method, "POST");
+                Map<String, String> request = readBody(exchange);
+                return Json.object("token", login(required(request, "username"), required(request, "password")));
+            }
+            case "/api/logout" -> {
+                requireMethod(method, "POST");
+                sessions.remove(token(exchange));
+                return "{}";
+            }
+            case "/api/pantry" -> {
+                return pantry(method, session(exchange).user, exchange);
+            }
+            case "/api/pantry/summary" -> {
+                requireMethod(method, "GET");
+                PantryRollups.Overview overview = PantryRollups.forStore(User.getPantryStore())
+                        .overview(session(exchange).user.getId(), LocalDate.now());
+                return Json.object("items", overview.getTotal().getCount(), "quantity", overview.getTotal().getQuantity(),
+                        "expired", overview.getExpired().getCount(),
+                        "expiringThisWeek", overview.getExpiringThisWeek().getCount());
+            }
+            case "/api/pantry/categories" -> {
+                requireMethod(method, "GET");
+                StringBuilder json = new StringBuilder("[");
+                for (Map.Entry<String, PantryRollups.Totals> category : PantryRollups.forStore(User.getPantryStore())
+                        .byCategory(session(exchange).user.getId()).entrySet()) {
+                    if (json.length() > 1) {
+                        json.append(',');
+                    }
+                    json.append(Json.object("category", category.getKey(), "items", category.getValue().getCount(),
+                            "quantity", category.getValue().getQuantity()));
+                }
+                return json.append(']').toString();
+            }
+            case "/api/shopping" -> {
+                return shopping(method, app.getShoppingListLog(session(exchange).user), exchange);
+            }
+            case "/api/notifications" -> {
+                return notifications(method, new Notifications(session(exchange).user.getId()));
+            }
+            default -> throw new HttpError(404, "No such endpoint: " + path);
+        }
+    }
+
+    private String pantry(String method, User user, HttpExchange exchange) throws IOException {
+        switch (method) {
+            case "GET" -> {
+                StringBuilder json = new StringBuilder("[");
+                for (PantryItem item : User.getPantryStore().read(user.getId())) { // Not viewPantry, which hides I/O errors
+                    if (json.length() > 1) {
+                        json.append(',');
+                    }
+                    json.append(Json.object("itemName", item.getItemName(), "quantity", item.getQuantity(),
+                            "unit", item.getUnit(), "expirationDate", item.getExpirationDate(),
+                            "category", item.getCategory()));
+                }
+                return json.append(']').toString();
+            }
+            case "POST" -> {
+                Map<String, String> request = readBody(exchange);
+                LocalDate expirationDate;
+                try {
+                    expirationDate = LocalDate.parse(required(request, "expirationDate"));
+                } catch (DateTimeParseException e) {
+                    throw new HttpError(400, "expirationDate must be YYYY-MM-DD");
+                }
+                User.addToPantry(user.getId(), required(request, "itemName"),
+                        String.valueOf(intField(request, "quantity")), required(request, "unit"),
+                        expirationDate, required(request, "category"));
+                return "{}";
+            }
+            case "PUT" -> {
+                Map<String, String> request = readBody(exchange);
+                String itemName = required(request, "itemName");
+                if (!User.updatePantryQuantity(user.getId(), itemName, intField(request, "quantity"))) {
+                    throw new HttpError(404, "No pantry item named " + itemName);
+                }
+                return "{}";
+            }
+            case "DELETE" -> {
+                String itemName = queryParameter(exchange, "name");
+                if (itemName == null || !User.removeFromPantry(user.getId(), itemName)) {
+                    throw new HttpError(404, "No pantry item named " + itemName);
+                }
+                return "{}";
+            }
+            default -> throw methodNotAllowed(method);
+        }
+    }
+
+    private String shopping(String method, ShoppingListLog log, HttpExchange exchange) throws IOException {
+        // A session's requests may overlap; holding the log makes each change and its save one step
+        synchronized (log) {
+            ShoppingList list = log.getList();
+            switch (method) {
+                case "GET" -> {
+                    StringBuilder json = new StringBuilder("[");
+                    for (ShoppingListItem item : list.listItems()) {
+                        if (json.length() > 1) {
+                            json.append(',');
+                        }
+                        json.append(Json.object("itemName", item.getItemName(), "quantity", item.getQuantity(),
+                                "priority", item.getPriority()));
+                    }
+                    return json.append(']').toString();
+                }
+                case "POST" -> {
+                    Map<String, String> request = readBody(exchange);
+                    list.addItem(new ShoppingListItem(required(request, "itemName"), intField(request, "quantity"),
+                            required(request, "priority")));
+                    log.save();
+                    return "{}";
+                }
+                case "DELETE" -> {
+                    String itemName = queryParameter(exchange, "name");
+                    if (itemName == null) {
+                        list.clearList();
+                    } else if (!list.removeItem(itemName)) {
+                        throw new HttpError(404, "No shopping list item named " + itemName);
+                    }
+                    log.save();
+                    return "{}";
+                }
+                default -> throw methodNotAllowed(method);
+            }
+        }
+    }
+
+    private static String notifications(String method, Notifications notifications) throws IOException {
+        switch (method) {
+            case "GET" -> {
+                StringBuilder json = new StringBuilder("[");
+                for (String message : notifications.getNotifications()) {
+                    if (json.length() > 1) {
+                        json.append(',');
+                    }
+                    Json.quote(message, json);
+                }
+                return json.append(']').toString();
+            }
+            case "DELETE" -> {
+                notifications.clearNotifications();
+                return "{}";
+            }
+            default -> throw methodNotAllowed(method);
+        }
+    }
+
+    /**
+     * Checks the credentials and opens a session, now and then dropping sessions that have expired.
+     */
+    private String login(String username, String password) {
+        User user;
+        try {
+            user = app.authenticate(username, password);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(401, e.getMessage());
+        }
+        if (loginsSinceSweep.incrementAndGet() >= SWEEP_EVERY) {
+            loginsSinceSweep.set(0);
+            long now = System.nanoTime();
+            sessions.values().removeIf(session -> session.isExpired(now));
+        }
+
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(user));
+        return token;
+    }
+
+    private Session session(HttpExchange exchange) {
+        String token = token(exchange);
+        Session session = token != null ? sessions.get(token) : null;
+        long now = System.nanoTime();
+        if (session == null || session.isExpired(now)) {
+            if (session != null) {
+                sessions.remove(token);
+            }
+            throw new HttpError(401, "Log in first.");
+        }
+        session.lastSeen = now;
+        return session;
+    }
+
+    private static String token(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        return authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw methodNotAllowed(method);
+        }
+    }
+
+    private static HttpError methodNotAllowed(String method) {
+        return new HttpError(405, "Method not allowed: " + method);
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> request, String field) {
+        String value = request.get(field);
+        if (value == null || value.isEmpty()) {
+            throw new HttpError(400, "Missing field: " + field);
+        }
+        return value;
+    }
+
+    private static int intField(Map<String, String> request, String field) {
+        try {
+            return Integer.parseInt(required(request, field));
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, field + " must be a whole number");
+        }
+    }
+}
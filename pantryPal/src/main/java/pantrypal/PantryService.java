@@ -0,0 +1,240 @@
+package pantrypal;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous front end to {@link PantryApp}, {@link User} and {@link Notifications} for the screens.
+ * Password hashing and file I/O run on virtual threads, so the Event Dispatch Thread only ever
+ * waits for Swing work. Use {@link #onEdt} to hand a result back to the UI.
+ */
+public class PantryService {
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final PantryApp app;
+
+    /**
+     * Constructs a service for the given application.
+     *
+     * @param app The application whose users and data the service works on
+     */
+    public PantryService(PantryApp app) {
+        this.app = app;
+    }
+
+    /**
+     * Logs a user in.
+     *
+     * @param username The username
+     * @param password The plaintext password
+     * @return The logged-in user; fails with IllegalArgumentException if the credentials are wrong
+     */
+    public CompletableFuture<User> login(String username, String password) {
+        return CompletableFuture.supplyAsync(() -> app.loginUser(username, password), executor);
+    }
+
+    /**
+     * Registers and saves a new user.
+     *
+     * @param username The username
+     * @param password The plaintext password
+     * @return The new user; fails with IllegalArgumentException if the username is taken
+     */
+    public CompletableFuture<User> register(String username, String password) {
+        return supply(() -> app.registerUser(username, password));
+    }
+
+    /**
+     * Loads a user's pantry.
+     *
+     * @param user The user
+     * @return The user's pantry items
+     */
+    public CompletableFuture<List<PantryItem>> viewPantry(User user) {
+        return CompletableFuture.supplyAsync(user::viewPantry, executor);
+    }
+
+    /**
+     * Creates a table model that pages through a user's pantry on this service's threads.
+     *
+     * @param user The user
+     * @return A model with no rows yet; call {@link PantryTableModel#reload()} to fill it
+     */
+    public PantryTableModel pantryModel(User user) {
+        return new PantryTableModel(User.getPantryStore(), user.getId(), executor);
+    }
+
+    /**
+     * Adds an item to a user's pantry.
+     *
+     * @param user The user
+     * @param item The item to add
+     * @return The added item
+     */
+    public CompletableFuture<PantryItem> addToPantry(User user, PantryItem item) {
+        return supply(() -> {
+            User.addToPantry(user.getId(), item.getItemName(), String.valueOf(item.getQuantity()), item.getUnit(),
+                    item.getExpirationDate(), item.getCategory());
+            return item;
+        });
+    }
+
+    /**
+     * Removes every item with the given name from a user's pantry.
+     *
+     * @param user     The user
+     * @param itemName The name of the item to remove
+     * @return True if an item was removed
+     */
+    public CompletableFuture<Boolean> removeFromPantry(User user, String itemName) {
+        return supply(() -> User.removeFromPantry(user.getId(), itemName));
+    }
+
+    /**
+     * Loads a user's notifications.
+     *
+     * @param user The user
+     * @return The user's notifications, oldest first
+     */
+    public CompletableFuture<List<String>> getNotifications(User user) {
+        return supply(() -> new Notifications(user.getId()).getNotifications());
+    }
+
+    /**
+     * Deletes all of a user's notifications.
+     *
+     * @param user The user
+     * @return A future that completes once the notifications are gone
+     */
+    public CompletableFuture<Void> clearNotifications(User user) {
+        return supply(() -> {
+            new Notifications(user.getId()).clearNotifications();
+            return null;
+        });
+    }
+
+    /**
+     * Loads a user's shopping list, reading only that user's log the first time.
+     *
+     * @param user The user
+     * @return The log holding the user's shopping list
+     */
+    public CompletableFuture<ShoppingListLog> shoppingList(User user) {
+        return supply(() -> app.getShoppingListLog(user));
+    }
+
+    /**
+     * Saves the changes made to a shopping list since its last save.
+     *
+     * @param log The log holding the list
+     * @return A future that completes once the changes are queued for writing
+     */
+    public CompletableFuture<Void> saveShoppingList(ShoppingListLog log) {
+        return supply(() -> {
+            log.save();
+            return null;
+        });
+    }
+
+    /**
+     * Sets how much of an item a user wants to keep on hand.
+     *
+     * @param user     The user
+     * @param itemName The name of the item
+     * @param parLevel The quantity to keep on hand; 0 stops tracking the item
+     * @return A future that completes once the par level is saved
+     */
+    public CompletableFuture<Void> setParLevel(User user, String itemName, int parLevel) {
+        return supply(() -> {
+            ReplenishmentEngine.forStore(User.getPantryStore()).setParLevel(user.getId(), itemName, parLevel);
+            return null;
+        });
+    }
+
+    /**
+     * Gets the items a user has fallen below par on.
+     *
+     * @param user The user
+     * @return The suggested shopping list items
+     */
+    public CompletableFuture<List<ShoppingListItem>> lowStock(User user) {
+        return supply(() -> ReplenishmentEngine.forStore(User.getPantryStore()).suggestions(user.getId()));
+    }
+
+    /**
+     * Suggests names of items a user already has in their pantry or on their shopping list.
+     *
+     * @param user  The user
+     * @param query The text typed so far
+     * @param limit The most names to return
+     * @return Matching names, best first; see {@link ItemNameIndex#suggest}
+     */
+    public CompletableFuture<List<String>> suggestItemNames(User user, String query, int limit) {
+        return supply(() -> ItemNameIndex.forStore(User.getPantryStore()).suggest(user.getId(), query, limit));
+    }
+
+    /**
+     * Summarises a user's pantry from its running totals, without reading the items.
+     *
+     * @param user The user
+     * @return Item counts and quantities overall, expired, expiring this week and by category
+     */
+    public CompletableFuture<PantryRollups.Overview> pantryOverview(User user) {
+        return supply(() -> PantryRollups.forStore(User.getPantryStore()).overview(user.getId(), LocalDate.now()));
+    }
+
+    /**
+     * Runs a callback on the Event Dispatch Thread when a future completes.
+     * Failures are unwrapped, so the callback sees the exception the task threw.
+     *
+     * @param future    The future to wait for
+     * @param onSuccess Called with the result if the future succeeds
+     * @param onFailure Called with the cause if the future fails
+     * @param <T>       The type of the result
+     */
+    public static <T> void onEdt(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                onSuccess.accept(result);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                onFailure.accept(cause instanceof UncheckedIOException ? cause.getCause() : cause);
+            }
+        }));
+    }
+
+    /**
+     * A task that may throw an IOException.
+     */
+    interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+
+    private static <T> CompletableFuture<T> supply(IOSupplier<T> task) {
+        return supply(task, executor);
+    }
+
+    /**
+     * Runs a task on an executor, failing the future with an UncheckedIOException if it throws an
+     * IOException. {@link #onEdt} unwraps it again.
+     *
+     * @param task     The task
+     * @param executor Runs the task
+     * @param <T>      The type of the result
+     * @return A future for the task's result
+     */
+    static <T> CompletableFuture<T> supply(IOSupplier<T> task, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.get();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+}
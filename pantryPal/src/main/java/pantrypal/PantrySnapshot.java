@@ -0,0 +1,373 @@
+package pantrypal;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A compact, versioned binary image of every user's pantry, used for fast cold loads.
+ * A snapshot records how many bytes of the pantry log it covers; on startup only the log
+ * past that point needs to be scanned, and no CSV field is parsed for the covered items.
+ *
+ * <p>Layout (all numbers big-endian):</p>
+ * <pre>
+ * user blocks   per user: itemCount int, then per item:
+ *                 name (u16 length + UTF-8), quantity int, unit id int, expiration epoch-day int, category id int
+ * dictionary    count int, then each unit/category string as u16 length + UTF-8
+ * directory     count int, then per user: userId (u16 length + UTF-8), block offset long, block length int
+ * footer        dictionary offset long, covered log length long, log checksum long,
+ *               item count long, version int, magic int
+ * </pre>
+ * The footer goes last so a snapshot can be streamed out before its covered log length is known.
+ */
+public class PantrySnapshot {
+    private static final int MAGIC = 0x50505331; // "PPS1"
+    private static final int VERSION = 1;
+    private static final int FOOTER_BYTES = 8 + 8 + 8 + 8 + 4 + 4;
+    private static final int CHECKSUM_WINDOW = 4096; // Log bytes checksummed just before the covered length
+    private static final int ITEM_FIXED_BYTES = 4 * 4;  // Quantity, unit id, epoch day and category id after the name
+
+    private final byte[] data;                 // The whole snapshot file
+    private final int[] symbols;               // SymbolTable id of each unit and category in the file's dictionary
+    private final String[] symbolNames;        // The dictionary's strings, for ids that are SymbolTable.UNINTERNED
+    private final Map<String, long[]> blocks;  // userId -> {block offset, block length}
+    private final long logLength;              // Bytes of the pantry log this snapshot covers
+    private final long itemCount;
+
+    private PantrySnapshot(byte[] data, int[] symbols, String[] symbolNames, Map<String, long[]> blocks,
+                           long logLength, long itemCount) {
+        this.data = data;
+        this.symbols = symbols;
+        this.symbolNames = symbolNames;
+        this.blocks = blocks;
+        this.logLength = logLength;
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * Loads a snapshot if it exists and still matches the pantry log.
+     * Only the dictionary and user directory are decoded; item blocks are decoded on demand.
+     *
+     * @param snapshotPath The snapshot file
+     * @param logPath      The pantry log the snapshot was taken from
+     * @return The snapshot, or null if there is none or it no longer matches the log
+     */
+    public static PantrySnapshot load(Path snapshotPath, Path logPath) {
+        try {
+            if (!Files.exists(snapshotPath) || !Files.exists(logPath)) {
+                return null;
+            }
+            byte[] data = Files.readAllBytes(snapshotPath);
+            if (data.length < FOOTER_BYTES) {
+                return null;
+            }
+
+            ByteBuffer footer = ByteBuffer.wrap(data, data.length - FOOTER_BYTES, FOOTER_BYTES);
+            long dictionaryOffset = footer.getLong();
+            long logLength = footer.getLong();
+            long logChecksum = footer.getLong();
+            long itemCount = footer.getLong();
+            int version = footer.getInt();
+            int magic = footer.getInt();
+            if (magic != MAGIC || version != VERSION || Files.size(logPath) < logLength
+                    || checksumLog(logPath, logLength) != logChecksum) {
+                return null; // Written by another version, or the log was replaced since
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            buffer.position((int) dictionaryOffset);
+            int[] symbols = new int[buffer.getInt()];
+            String[] symbolNames = new String[symbols.length];
+            for (int i = 0; i < symbols.length; i++) {
+                symbolNames[i] = readString(buffer);
+                symbols[i] = SymbolTable.id(symbolNames[i]); // Items then decode to ids with no string lookups
+            }
+            int userCount = buffer.getInt();
+            Map<String, long[]> blocks = HashMap.newHashMap(userCount);
+            for (int i = 0; i < userCount; i++) {
+                String userId = readString(buffer);
+                blocks.put(userId, new long[] {buffer.getLong(), buffer.getInt()});
+            }
+            return new PantrySnapshot(data, symbols, symbolNames, blocks, logLength, itemCount);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable pantry snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decodes one user's items.
+     *
+     * @param userId The ID of the user
+     * @return A new, mutable list of the user's items; empty if the snapshot has none
+     */
+    public List<PantryItem> read(String userId) {
+        long[] block = blocks.get(userId);
+        if (block == null) {
+            return new ArrayList<>();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data, (int) block[0], (int) block[1]);
+        int count = buffer.getInt();
+        List<PantryItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(readItem(buffer));
+        }
+        return items;
+    }
+
+    /**
+     * Returns where each of a user's items starts in the snapshot, without decoding them.
+     * The positions can be passed to {@link #itemAt}, {@link #nameAt} and {@link #epochDayAt}.
+     *
+     * @param userId The ID of the user
+     * @return The position of each item, in order; empty if the snapshot has none
+     */
+    public long[] itemPositions(String userId) {
+        long[] block = blocks.get(userId);
+        if (block == null) {
+            return new long[0];
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data, (int) block[0], (int) block[1]);
+        long[] positions = new long[buffer.getInt()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = buffer.position();
+            int nameLength = Short.toUnsignedInt(buffer.getShort());
+            buffer.position(buffer.position() + nameLength + ITEM_FIXED_BYTES);
+        }
+        return positions;
+    }
+
+    /**
+     * Decodes the item at a position returned by {@link #itemPositions}.
+     *
+     * @param position The item's position
+     * @return The item
+     */
+    public PantryItem itemAt(long position) {
+        return readItem(ByteBuffer.wrap(data).position((int) position));
+    }
+
+    /**
+     * Decodes only the name of the item at a position returned by {@link #itemPositions}.
+     *
+     * @param position The item's position
+     * @return The item's name
+     */
+    public String nameAt(long position) {
+        return readString(ByteBuffer.wrap(data).position((int) position));
+    }
+
+    /**
+     * Reads only the expiration date, as an epoch day, of the item at a position returned by {@link #itemPositions}.
+     *
+     * @param position The item's position
+     * @return The item's expiration epoch day
+     */
+    public int epochDayAt(long position) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int nameLength = Short.toUnsignedInt(buffer.getShort((int) position));
+        return buffer.getInt((int) position + 2 + nameLength + 8); // After the quantity and unit id
+    }
+
+    /**
+     * Decodes the item at a position returned by {@link #itemPositions} straight into columns.
+     *
+     * @param position The item's position
+     * @param columns  The columns to append the item to
+     * @param quantity The quantity to store, or null to use the snapshot's
+     */
+    public void appendTo(long position, PantryColumns columns, Integer quantity) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).position((int) position);
+        String itemName = readString(buffer);
+        int storedQuantity = buffer.getInt();
+        int unit = buffer.getInt();
+        int epochDay = buffer.getInt();
+        int category = buffer.getInt();
+        if (symbols[unit] == SymbolTable.UNINTERNED || symbols[category] == SymbolTable.UNINTERNED) {
+            columns.add(itemName, quantity != null ? quantity : storedQuantity, symbolNames[unit], epochDay,
+                    symbolNames[category]);
+        } else {
+            columns.add(itemName, quantity != null ? quantity : storedQuantity, symbols[unit], epochDay,
+                    symbols[category]);
+        }
+    }
+
+    private PantryItem readItem(ByteBuffer buffer) {
+        String itemName = readString(buffer);
+        int quantity = buffer.getInt();
+        int unit = buffer.getInt();
+        LocalDate expirationDate = LocalDate.ofEpochDay(buffer.getInt());
+        int category = buffer.getInt();
+        if (symbols[unit] == SymbolTable.UNINTERNED || symbols[category] == SymbolTable.UNINTERNED) {
+            return new PantryItem(itemName, quantity, symbolNames[unit], expirationDate, symbolNames[category]);
+        }
+        return new PantryItem(itemName, quantity, symbols[unit], expirationDate, symbols[category]);
+    }
+
+    /**
+     * @return The IDs of every user with a block in this snapshot
+     */
+    public Set<String> userIds() {
+        return Collections.unmodifiableSet(blocks.keySet());
+    }
+
+    /**
+     * @return The number of bytes of the pantry log this snapshot covers
+     */
+    public long logLength() {
+        return logLength;
+    }
+
+    /**
+     * @return The number of items in this snapshot
+     */
+    public long itemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Checksums the log bytes just before the covered length, so a log that was
+     * rewritten or replaced since the snapshot was taken is detected cheaply.
+     *
+     * @param logPath   The pantry log
+     * @param logLength The covered length
+     * @return The checksum
+     * @throws IOException If the log cannot be read
+     */
+    public static long checksumLog(Path logPath, long logLength) throws IOException {
+        int window = (int) Math.min(CHECKSUM_WINDOW, logLength);
+        ByteBuffer buffer = ByteBuffer.allocate(window);
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            long position = logLength - window;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new EOFException("Pantry log is shorter than the snapshot expects");
+                }
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.flip());
+        return crc.getValue() ^ logLength;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Streams a snapshot to disk one user block at a time.
+     * The file is written under a temporary name and only replaces the old snapshot on {@link #finish}.
+     */
+    public static class Writer implements Closeable {
+        private final Path snapshotPath;
+        private final Path tempPath;
+        private final DataOutputStream out;
+        private final Map<String, Integer> dictionary = new LinkedHashMap<>(); // Unit or category -> file id
+        private final Map<String, long[]> blocks = new LinkedHashMap<>();
+        private long itemCount;
+        private boolean finished;
+
+        /**
+         * Starts writing a snapshot.
+         *
+         * @param snapshotPath The snapshot file to replace when finished
+         * @throws IOException If the temporary file cannot be created
+         */
+        public Writer(Path snapshotPath) throws IOException {
+            this.snapshotPath = snapshotPath;
+            Files.createDirectories(snapshotPath.getParent());
+            this.tempPath = Files.createTempFile(snapshotPath.getParent(), snapshotPath.getFileName().toString(), ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath), 1 << 16));
+        }
+
+        /**
+         * Writes one user's items as a block.
+         *
+         * @param userId The ID of the user
+         * @param items  The user's live items
+         * @throws IOException If an I/O error occurs
+         */
+        public void writeUser(String userId, List<PantryItem> items) throws IOException {
+            if (items.isEmpty()) {
+                return;
+            }
+            long offset = out.size();
+            out.writeInt(items.size());
+            for (PantryItem item : items) {
+                writeString(item.getItemName());
+                out.writeInt(item.getQuantity());
+                out.writeInt(idOf(item.getUnit()));
+                out.writeInt((int) item.getExpirationDate().toEpochDay());
+                out.writeInt(idOf(item.getCategory()));
+            }
+            blocks.put(userId, new long[] {offset, out.size() - offset});
+            itemCount += items.size();
+        }
+
+        /**
+         * Writes the dictionary, directory and footer, and moves the snapshot into place.
+         *
+         * @param logPath   The pantry log this snapshot was taken from
+         * @param logLength The number of log bytes the snapshot covers
+         * @throws IOException If an I/O error occurs
+         */
+        public void finish(Path logPath, long logLength) throws IOException {
+            long dictionaryOffset = out.size();
+            out.writeInt(dictionary.size());
+            for (String symbol : dictionary.keySet()) {
+                writeString(symbol);
+            }
+            out.writeInt(blocks.size());
+            for (Map.Entry<String, long[]> block : blocks.entrySet()) {
+                writeString(block.getKey());
+                out.writeLong(block.getValue()[0]);
+                out.writeInt((int) block.getValue()[1]);
+            }
+            out.writeLong(dictionaryOffset);
+            out.writeLong(logLength);
+            out.writeLong(checksumLog(logPath, logLength));
+            out.writeLong(itemCount);
+            out.writeInt(VERSION);
+            out.writeInt(MAGIC);
+            out.close();
+
+            Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        /**
+         * Discards the snapshot if it was not finished.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(tempPath);
+            }
+        }
+
+        private int idOf(String symbol) {
+            return dictionary.computeIfAbsent(symbol, key -> dictionary.size());
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IOException("Value too long for a pantry snapshot: " + bytes.length + " bytes");
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,1191 @@
+package pantrypal;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Indexed, append-only access to the shared pantry file.
+ * Keeps an in-memory index from userId to the byte offsets of that user's records,
+ * so loading one pantry only reads that user's lines instead of the whole file.
+ *
+ * <p>The file is a log: removals and quantity edits are appended as tombstone and
+ * update records, and reads merge a user's records in order. Once the share of dead
+ * records crosses {@link #COMPACTION_THRESHOLD}, a background compactor rewrites the
+ * file with only the live items.</p>
+ *
+ * <p>Record formats:</p>
+ * <pre>
+ * userId,itemName,quantity,unit,expirationDate,category   (item)
+ * -,userId,itemName                                       (tombstone)
+ * ~,userId,itemName,quantity                              (quantity update)
+ * </pre>
+ */
+public class PantryStore {
+    private static final String TOMBSTONE = "-";
+    private static final String UPDATE = "~";
+    private static final byte[] TOMBSTONE_BYTES = TOMBSTONE.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATE_BYTES = UPDATE.getBytes(StandardCharsets.UTF_8);
+    private static final double COMPACTION_THRESHOLD =
+            Double.parseDouble(System.getProperty("pantrypal.compactionThreshold", "0.5"));
+    private static final int COMPACTION_MIN_GARBAGE = 64; // Don't bother compacting tiny files
+
+    private static final LatencyHistogram ADD_LATENCY = Metrics.histogram("pantry.add");
+    private static final LatencyHistogram REMOVE_LATENCY = Metrics.histogram("pantry.remove");
+    private static final LatencyHistogram UPDATE_LATENCY = Metrics.histogram("pantry.update");
+    private static final LatencyHistogram READ_LATENCY = Metrics.histogram("pantry.read");
+    private static final LatencyHistogram READ_RANGE_LATENCY = Metrics.histogram("pantry.readRange");
+    private static final LatencyHistogram READ_COLUMNS_LATENCY = Metrics.histogram("pantry.readColumns");
+    private static final LatencyHistogram COMPACT_LATENCY = Metrics.histogram("pantry.compact");
+    private static final LatencyHistogram SNAPSHOT_LATENCY = Metrics.histogram("pantry.snapshot");
+
+    private static final Map<Path, PantryStore> stores = new HashMap<>();
+    private static final boolean SNAPSHOT_ON_EXIT =
+            Boolean.parseBoolean(System.getProperty("pantrypal.snapshotOnExit", "true"));
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pantry-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path filePath;                                   // The pantry file backing this store
+    private final Path snapshotPath;                               // Binary snapshot of the file, for cold loads
+    private PantrySnapshot snapshot;                               // Items covered by the snapshot, or null
+    private final Map<String, OffsetList> index = new HashMap<>(); // userId -> offsets of that user's records
+    private long indexedLength = -1;                               // Bytes of the file covered by the index
+    private long recordCount;                                      // Records in the indexed part of the file
+    private long garbageCount;                                     // Records a compaction would drop
+    private boolean compacting;                                    // True while a compaction is queued or running
+    private ExpiryIndex expiryIndex;                               // Built on the first expiry query, then kept current
+    private LiveRows liveRows;                                     // Row handles of the last user read by position
+    private FileChannel indexedFile;                               // The file the index describes, kept open while
+                                                                   // another process may replace the path
+    private Object fileKey;                                        // Identity of the indexed file, to spot replacement
+    private long unindexedOwnBytes;                                // Bytes appended here that the index has not reached
+    private volatile boolean used;                                 // Set once anything is read or written
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Told about every change made through the store, in log order, while the store lock is held.
+     * Implementations must be quick and must not call back into the store from another thread.
+     */
+    public interface Listener {
+        /**
+         * Called after items are added to a user's pantry.
+         *
+         * @param userId The ID of the user
+         * @param items  The added items, in the order they were added
+         */
+        void itemsAdded(String userId, List<PantryItem> items);
+
+        /**
+         * Called after every item with a name is removed from a user's pantry.
+         *
+         * @param userId   The ID of the user
+         * @param itemName The name of the removed items
+         */
+        void itemsRemoved(String userId, String itemName);
+
+        /**
+         * Called after the quantity of every item with a name is set.
+         *
+         * @param userId   The ID of the user
+         * @param itemName The name of the updated items
+         * @param quantity The new quantity of each item
+         */
+        void quantityChanged(String userId, String itemName, int quantity);
+
+        /**
+         * Called after a snapshot of the file is written, by {@link #writeSnapshot} or by a compaction.
+         * Listeners that save state derived from the file can save it then, matching the file the next run
+         * starts from.
+         */
+        default void snapshotWritten() {
+        }
+
+        /**
+         * Called when the store finds records it did not write, appended by another process or left in a
+         * file another process replaced. Those changes were never announced, so state derived from earlier
+         * calls is stale; drop it and rebuild it from the store when next needed.
+         */
+        default void reset() {
+        }
+    }
+
+    /**
+     * Handles one item while a pantry is streamed by {@link #forEachItem}.
+     */
+    public interface ItemHandler {
+        void item(PantryItem item) throws IOException;
+    }
+
+    /**
+     * Constructs a store over a pantry file. Most callers should use {@link #forFile}
+     * so the index is built once and shared.
+     *
+     * @param filePath The path of the pantry file
+     */
+    public PantryStore(Path filePath) {
+        this.filePath = filePath;
+        this.snapshotPath = filePath.resolveSibling(filePath.getFileName().toString().replaceFirst("\\.csv$", "") + ".snap");
+    }
+
+    /**
+     * Returns the store for the given pantry file, creating it on first use.
+     *
+     * @param filePath The path of the pantry file
+     * @return The store backing that file
+     */
+    public static synchronized PantryStore forFile(Path filePath) {
+        return stores.computeIfAbsent(filePath.toAbsolutePath().normalize(), PantryStore::new);
+    }
+
+    /**
+     * @return The path of the pantry file backing this store
+     */
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    static {
+        // Leave a snapshot behind so the next start doesn't have to parse the CSV
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (!SNAPSHOT_ON_EXIT) {
+                return;
+            }
+            List<PantryStore> open;
+            synchronized (PantryStore.class) {
+                open = new ArrayList<>(stores.values());
+            }
+            for (PantryStore store : open) {
+                try {
+                    if (store.used) { // An idle store has nothing new to snapshot
+                        store.writeSnapshot();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error writing pantry snapshot: " + e.getMessage());
+                }
+            }
+        }, "pantry-snapshot"));
+    }
+
+    /**
+     * Appends a pantry record for a user and indexes it.
+     *
+     * @param userId         The ID of the user
+     * @param itemName       The name of the item
+     * @param quantity       The quantity of the item
+     * @param unit           The unit of measurement
+     * @param expirationDate The expiration date
+     * @param category       The category of the item
+     * @throws IOException           If an I/O error occurs
+     * @throws NumberFormatException If the quantity is not a whole number; nothing is written
+     */
+    public void add(String userId, String itemName, String quantity, String unit,
+                    LocalDate expirationDate, String category) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int amount = Integer.parseInt(quantity); // Before appending, so a bad record never reaches the log
+            // Queued and announced under one lock, so readers and listeners see adds in log order
+            synchronized (this) {
+                append(CsvCodec.record(userId, itemName, amount, unit, expirationDate, category));
+                if (expiryIndex != null || !listeners.isEmpty()) {
+                    added(userId, List.of(new PantryItem(itemName, amount, unit, expirationDate, category)));
+                }
+            }
+        } finally {
+            ADD_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Appends many items for a user in one queued write, and tells listeners about them in one call.
+     *
+     * @param userId The ID of the user
+     * @param items  The items to add
+     * @throws IOException If an I/O error occurs
+     */
+    public void addAll(String userId, List<PantryItem> items) throws IOException {
+        if (items.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            // Encoded straight into one buffer; a String per record doubles the cost of a large import
+            StringBuilder records = new StringBuilder(64 * items.size());
+            for (PantryItem item : items) {
+                CsvCodec.appendField(records, userId);
+                records.append(',');
+                CsvCodec.appendField(records, item.getItemName());
+                records.append(',').append(item.getQuantity()).append(',');
+                CsvCodec.appendField(records, String.valueOf(item.getUnit()));
+                records.append(',').append(item.getExpirationDate()).append(',');
+                CsvCodec.appendField(records, String.valueOf(item.getCategory()));
+                records.append(System.lineSeparator());
+            }
+            synchronized (this) {
+                append(records.toString());
+                added(userId, items);
+            }
+        } finally {
+            ADD_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Registers a listener for changes made through this store.
+     *
+     * @param listener The listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    private void added(String userId, List<PantryItem> items) {
+        if (expiryIndex != null) {
+            for (PantryItem item : items) {
+                expiryIndex.add(userId, item);
+            }
+        }
+        for (Listener listener : listeners) {
+            listener.itemsAdded(userId, items);
+        }
+    }
+
+    /**
+     * Removes every item with the given name from a user's pantry by appending a tombstone.
+     * Only the user's own records are read to check that the item exists.
+     *
+     * @param userId   The ID of the user
+     * @param itemName The name of the item to remove
+     * @return True if at least one item was removed, false otherwise
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized boolean remove(String userId, String itemName) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (countMatches(readItems(userId), itemName) == 0) {
+                return false;
+            }
+
+            append(CsvCodec.record(TOMBSTONE, userId, itemName));
+            if (expiryIndex != null) {
+                expiryIndex.remove(userId, itemName);
+            }
+            for (Listener listener : listeners) {
+                listener.itemsRemoved(userId, itemName);
+            }
+            return true;
+        } finally {
+            REMOVE_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Sets the quantity of every item with the given name in a user's pantry by appending an update record.
+     *
+     * @param userId   The ID of the user
+     * @param itemName The name of the item to update
+     * @param quantity The new quantity
+     * @return True if at least one item was updated, false otherwise
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized boolean updateQuantity(String userId, String itemName, int quantity) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (countMatches(readItems(userId), itemName) == 0) {
+                return false;
+            }
+
+            append(CsvCodec.record(UPDATE, userId, itemName, quantity));
+            if (expiryIndex != null) {
+                expiryIndex.updateQuantity(userId, itemName, quantity);
+            }
+            for (Listener listener : listeners) {
+                listener.quantityChanged(userId, itemName, quantity);
+            }
+            return true;
+        } finally {
+            UPDATE_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Reads the pantry items belonging to a user, merging tombstones and updates.
+     * Cost grows with the number of the user's records, not the size of the file.
+     *
+     * @param userId The ID of the user
+     * @return The user's pantry items in the order they were added
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized List<PantryItem> read(String userId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return readItems(userId);
+        } finally {
+            READ_LATENCY.recordSince(start);
+        }
+    }
+
+    private List<PantryItem> readItems(String userId) throws IOException {
+        WriteBehindQueue.shared().flush(filePath); // Make queued appends visible
+        List<PantryItem> items = new ArrayList<>();
+        if (!Files.exists(filePath)) {
+            return items;
+        }
+        refreshIndex();
+
+        OffsetList offsets = index.get(userId);
+        if (offsets == null) {
+            return snapshot != null ? snapshot.read(userId) : items;
+        }
+        try (MappedRecordReader reader = new MappedRecordReader(indexedFile)) {
+            return merge(userId, snapshot, offsets.toArray(), reader);
+        }
+    }
+
+    /**
+     * Returns the number of items in a user's pantry.
+     * Together with {@link #readRange} this lets a caller page through a large pantry
+     * without ever holding all of its items.
+     *
+     * @param userId The ID of the user
+     * @return The number of live items
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized int count(String userId) throws IOException {
+        return liveRows(userId).size;
+    }
+
+    /**
+     * Reads the items at positions {@code from} (inclusive) to {@code to} (exclusive) of a user's pantry,
+     * in the same order as {@link #read}. Only the items in the range are decoded.
+     *
+     * @param userId The ID of the user
+     * @param from   The position of the first item
+     * @param to     The position after the last item; clamped to the pantry's size
+     * @return The items in the range
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized List<PantryItem> readRange(String userId, int from, int to) throws IOException {
+        long start = System.nanoTime();
+        try {
+            LiveRows rows = liveRows(userId);
+            int end = Math.min(to, rows.size);
+            List<PantryItem> items = new ArrayList<>(Math.max(0, end - from));
+            try (MappedRecordReader reader = rows.hasLogRows() ? new MappedRecordReader(indexedFile) : null) {
+                for (int row = Math.max(0, from); row < end; row++) {
+                    long handle = rows.handles[row];
+                    PantryItem item = handle < 0 ? rows.snapshot.itemAt(-(handle + 1)) : item(reader.recordAt(handle));
+                    Integer quantity = rows.quantities.get(row);
+                    if (quantity != null) {
+                        item.setQuantity(quantity);
+                    }
+                    items.add(item);
+                }
+            }
+            return items;
+        } finally {
+            READ_RANGE_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Reads a user's pantry into columns, in the same order as {@link #read}.
+     * Items are decoded straight into the column arrays; no {@link PantryItem} is created.
+     *
+     * @param userId The ID of the user
+     * @return The user's items as columns
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized PantryColumns readColumns(String userId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            LiveRows rows = liveRows(userId);
+            PantryColumns columns = new PantryColumns(rows.size);
+            try (MappedRecordReader reader = rows.hasLogRows() ? new MappedRecordReader(indexedFile) : null) {
+                for (int row = 0; row < rows.size; row++) {
+                    long handle = rows.handles[row];
+                    Integer quantity = rows.quantities.get(row);
+                    if (handle < 0) {
+                        rows.snapshot.appendTo(-(handle + 1), columns, quantity);
+                        continue;
+                    }
+                    MappedRecordReader.Record record = reader.recordAt(handle);
+                    int fieldCount = record.fieldCount();
+                    columns.add(itemName(record, 1, fieldCount - 4),
+                            quantity != null ? quantity : record.intField(fieldCount - 4),
+                            record.field(fieldCount - 3),
+                            (int) record.dateField(fieldCount - 2).toEpochDay(),
+                            record.field(fieldCount - 1));
+                }
+            }
+            return columns;
+        } finally {
+            READ_COLUMNS_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Hands a user's items to a handler one at a time, in the same order as {@link #read}.
+     * Unlike {@link #read} no list is built, so a caller can stream a pantry of any size.
+     * The store lock is only held while the user's rows are found. Items are decoded and handled after
+     * it is released, as they were at that point, so a slow handler does not hold up other users.
+     * Callers that must not miss a change between the items and a listener call hold the lock themselves.
+     *
+     * @param userId  The ID of the user
+     * @param handler Called with each item
+     * @throws IOException If an I/O error occurs, or the handler throws one
+     */
+    public void forEachItem(String userId, ItemHandler handler) throws IOException {
+        LiveRows rows;
+        MappedRecordReader reader = null;
+        synchronized (this) {
+            WriteBehindQueue.shared().flush(filePath); // Make queued appends visible
+            refreshIndex();
+            OffsetList offsets = index.get(userId);
+            try {
+                // A channel of its own, which stays readable if compaction replaces the file and closes the
+                // indexed one once the lock is released. One reader for both passes, so the user's pages are
+                // only faulted in once. The rows are not cached: streaming every pantry would otherwise evict
+                // the one being paged through
+                reader = offsets != null ? new MappedRecordReader(filePath) : null;
+                rows = liveRows != null && liveRows.isCurrent(userId, offsets, snapshot)
+                        ? liveRows : buildLiveRows(userId, offsets, reader);
+            } catch (IOException | RuntimeException e) {
+                if (reader != null) {
+                    reader.close();
+                }
+                throw e;
+            }
+        }
+
+        try (MappedRecordReader records = reader) {
+            for (int row = 0; row < rows.size; row++) {
+                long handle = rows.handles[row];
+                PantryItem item = handle < 0 ? rows.snapshot.itemAt(-(handle + 1)) : item(records.recordAt(handle));
+                Integer quantity = rows.quantities.get(row);
+                if (quantity != null) {
+                    item.setQuantity(quantity);
+                }
+                handler.item(item);
+            }
+        }
+    }
+
+    /**
+     * Finds the positions of a user's items that are expired on the given date.
+     * Only expiration dates are decoded.
+     *
+     * @param userId The ID of the user
+     * @param today  The date to check against
+     * @return The positions of the expired items, ascending
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized int[] expiredRows(String userId, LocalDate today) throws IOException {
+        LiveRows rows = liveRows(userId);
+        long todayEpochDay = today.toEpochDay();
+        int[] expired = new int[rows.size];
+        int count = 0;
+        try (MappedRecordReader reader = rows.hasLogRows() ? new MappedRecordReader(indexedFile) : null) {
+            for (int row = 0; row < rows.size; row++) {
+                long handle = rows.handles[row];
+                long epochDay;
+                if (handle < 0) {
+                    epochDay = rows.snapshot.epochDayAt(-(handle + 1));
+                } else {
+                    MappedRecordReader.Record record = reader.recordAt(handle);
+                    epochDay = record.dateField(record.fieldCount() - 2).toEpochDay();
+                }
+                if (epochDay < todayEpochDay) {
+                    expired[count++] = row;
+                }
+            }
+        }
+        return Arrays.copyOf(expired, count);
+    }
+
+    /**
+     * Finds the positions of a user's items with the given name, which {@link #remove} would drop.
+     *
+     * @param userId   The ID of the user
+     * @param itemName The name of the items
+     * @return The positions of the matching items, ascending
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized int[] rowsNamed(String userId, String itemName) throws IOException {
+        LiveRows rows = liveRows(userId);
+        int[] matches = new int[rows.size];
+        int count = 0;
+        try (MappedRecordReader reader = rows.hasLogRows() ? new MappedRecordReader(indexedFile) : null) {
+            for (int row = 0; row < rows.size; row++) {
+                if (rows.nameAt(row, reader).equals(itemName)) {
+                    matches[count++] = row;
+                }
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Returns the row handles of a user's live items, rebuilding them if the user's records changed.
+     */
+    private LiveRows liveRows(String userId) throws IOException {
+        WriteBehindQueue.shared().flush(filePath); // Make queued appends visible
+        refreshIndex();
+        OffsetList offsets = index.get(userId);
+        if (liveRows == null || !liveRows.isCurrent(userId, offsets, snapshot)) {
+            try (MappedRecordReader reader = offsets != null ? new MappedRecordReader(indexedFile) : null) {
+                liveRows = buildLiveRows(userId, offsets, reader);
+            }
+        }
+        return liveRows;
+    }
+
+    /**
+     * Resolves a user's records to the rows {@link #read} would return, without decoding items.
+     * A first pass over the user's log finds the last tombstone and last quantity update per name;
+     * then each snapshot item and item record is kept unless a tombstone for its name follows it.
+     * Names are only decoded when the user has tombstones or updates at all. Malformed records are skipped,
+     * so the rows never point at an item that cannot be decoded.
+     * The reader must be open on the indexed file if the user has log records.
+     */
+    private LiveRows buildLiveRows(String userId, OffsetList offsets, MappedRecordReader reader) throws IOException {
+        long[] logOffsets = offsets != null ? offsets.toArray() : new long[0];
+        long[] snapshotPositions = snapshot != null ? snapshot.itemPositions(userId) : new long[0];
+        long[] handles = new long[snapshotPositions.length + logOffsets.length];
+        Map<Integer, Integer> quantities = new HashMap<>();
+        int size = 0;
+
+        // Log records are numbered by their order in the user's log; snapshot items come before all of them
+        Map<String, Integer> lastTombstone = new HashMap<>();
+        Map<String, int[]> lastUpdate = new HashMap<>(); // name -> {record number, quantity}
+        boolean[] isItem = new boolean[logOffsets.length];
+        for (int i = 0; i < logOffsets.length; i++) {
+            MappedRecordReader.Record record = reader.recordAt(logOffsets[i]);
+            if (record == null) {
+                continue;
+            }
+            int fieldCount = record.fieldCount();
+            if (fieldCount >= 3 && record.fieldEquals(0, TOMBSTONE_BYTES)) {
+                lastTombstone.put(itemName(record, 2, fieldCount), i);
+            } else if (fieldCount >= 4 && record.fieldEquals(0, UPDATE_BYTES)) {
+                try {
+                    lastUpdate.put(itemName(record, 2, fieldCount - 1), new int[] {i, record.intField(fieldCount - 1)});
+                } catch (NumberFormatException e) {
+                    // Skip malformed records
+                }
+            } else if (fieldCount >= 6) {
+                isItem[i] = isWellFormed(record);
+            }
+        }
+
+        boolean needNames = !lastTombstone.isEmpty() || !lastUpdate.isEmpty();
+        for (long position : snapshotPositions) {
+            if (needNames) {
+                String name = snapshot.nameAt(position);
+                if (lastTombstone.containsKey(name)) {
+                    continue;
+                }
+                int[] update = lastUpdate.get(name);
+                if (update != null) {
+                    quantities.put(size, update[1]);
+                }
+            }
+            handles[size++] = -(position + 1);
+        }
+        for (int i = 0; i < logOffsets.length; i++) {
+            if (!isItem[i]) {
+                continue;
+            }
+            if (needNames) {
+                MappedRecordReader.Record record = reader.recordAt(logOffsets[i]);
+                String name = itemName(record, 1, record.fieldCount() - 4);
+                if (lastTombstone.getOrDefault(name, -1) > i) {
+                    continue;
+                }
+                int[] update = lastUpdate.get(name);
+                if (update != null && update[0] > i) {
+                    quantities.put(size, update[1]);
+                }
+            }
+            handles[size++] = logOffsets[i];
+        }
+        return new LiveRows(userId, offsets, offsets != null ? offsets.size() : 0, snapshot, handles, size, quantities);
+    }
+
+    /**
+     * Returns every user's items that expire between two dates, inclusive, in expiration order.
+     * The first expiry query builds an {@link ExpiryIndex} from all pantries; after that each
+     * query costs O(log n + k) and the index follows adds, updates and removals made through this store.
+     *
+     * @param from The first expiration date to include
+     * @param to   The last expiration date to include
+     * @return The matching items and their owners
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized List<ExpiryIndex.Entry> expiringBetween(LocalDate from, LocalDate to) throws IOException {
+        return expiryIndex().expiringBetween(from, to);
+    }
+
+    /**
+     * Returns every user's items that are expired on the given date, in expiration order.
+     *
+     * @param date The date to check against
+     * @return The expired items and their owners
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized List<ExpiryIndex.Entry> expiredAsOf(LocalDate date) throws IOException {
+        return expiryIndex().expiredAsOf(date);
+    }
+
+    private ExpiryIndex expiryIndex() throws IOException {
+        WriteBehindQueue.shared().flush(filePath);
+        refreshIndex();
+        if (expiryIndex == null) {
+            ExpiryIndex built = new ExpiryIndex();
+            if (indexedLength > 0) {
+                try (MappedRecordReader reader = new MappedRecordReader(indexedFile)) {
+                    for (String userId : userIds(snapshot, index.keySet())) {
+                        OffsetList offsets = index.get(userId);
+                        for (PantryItem item : merge(userId, snapshot, offsets != null ? offsets.toArray() : new long[0], reader)) {
+                            built.add(userId, item);
+                        }
+                    }
+                }
+            }
+            expiryIndex = built;
+        }
+        return expiryIndex;
+    }
+
+    /**
+     * Writes a binary snapshot of every user's pantry, so the next cold load can skip the CSV.
+     * Does nothing if the existing snapshot already covers the whole file.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized void writeSnapshot() throws IOException {
+        long start = System.nanoTime();
+        try {
+            writeSnapshotNow();
+        } finally {
+            SNAPSHOT_LATENCY.recordSince(start);
+        }
+        snapshotWritten();
+    }
+
+    private void snapshotWritten() {
+        for (Listener listener : listeners) {
+            listener.snapshotWritten();
+        }
+    }
+
+    private void writeSnapshotNow() throws IOException {
+        // Hold back queued appends so the snapshot matches the file it covers,
+        // and keep other processes from compacting the file while it is read
+        WriteBehindQueue.shared().runExclusive(filePath, () -> {
+            try (StripedFileLock.Handle lock = StripedFileLock.shared(filePath)) {
+                writeSnapshotLocked();
+            }
+        });
+    }
+
+    private void writeSnapshotLocked() throws IOException {
+        refreshIndex();
+        if (indexedLength == 0 || (snapshot != null && snapshot.logLength() == indexedLength)) {
+            return;
+        }
+
+        try (MappedRecordReader reader = new MappedRecordReader(indexedFile);
+             PantrySnapshot.Writer writer = new PantrySnapshot.Writer(snapshotPath)) {
+            for (String userId : userIds(snapshot, index.keySet())) {
+                OffsetList offsets = index.get(userId);
+                writer.writeUser(userId, merge(userId, snapshot, offsets != null ? offsets.toArray() : new long[0], reader));
+            }
+            writer.finish(filePath, indexedLength);
+        }
+    }
+
+    /**
+     * Brings the index up to date with the file, so listeners hear about changes made by another
+     * process before they answer from state of their own.
+     *
+     * @return The bytes of the file the index covers, and so everything listeners have been told about
+     * @throws IOException If an I/O error occurs
+     */
+    synchronized long refresh() throws IOException {
+        WriteBehindQueue.shared().flush(filePath);
+        refreshIndex();
+        return Math.max(0, indexedLength);
+    }
+
+    /**
+     * Returns the fraction of records in the file that a compaction would drop.
+     *
+     * @return The garbage ratio, between 0 and 1
+     */
+    public synchronized double garbageRatio() {
+        return recordCount == 0 ? 0 : (double) garbageCount / recordCount;
+    }
+
+    /**
+     * Merges a user's snapshot items with their log records, in order.
+     */
+    private static List<PantryItem> merge(String userId, PantrySnapshot base, long[] offsets,
+                                          MappedRecordReader reader) throws IOException {
+        List<PantryItem> items = base != null ? base.read(userId) : new ArrayList<>();
+        for (long offset : offsets) {
+            MappedRecordReader.Record record = reader.recordAt(offset);
+            if (record != null) {
+                apply(items, record);
+            }
+        }
+        return items;
+    }
+
+    private static Set<String> userIds(PantrySnapshot base, Set<String> indexed) {
+        Set<String> userIds = new LinkedHashSet<>(indexed);
+        if (base != null) {
+            userIds.addAll(base.userIds());
+        }
+        return userIds;
+    }
+
+    /**
+     * Applies one record to a user's merged item list.
+     * Records written before names were quoted may split a name containing commas over several
+     * fields; the fields around the name have fixed counts, so the name is rebuilt from the rest.
+     */
+    private static void apply(List<PantryItem> items, MappedRecordReader.Record record) throws IOException {
+        int fieldCount = record.fieldCount();
+        if (fieldCount >= 3 && record.fieldEquals(0, TOMBSTONE_BYTES)) { // -, userId, itemName
+            String itemName = itemName(record, 2, fieldCount);
+            items.removeIf(item -> item.getItemName().equals(itemName));
+        } else if (fieldCount >= 4 && record.fieldEquals(0, UPDATE_BYTES)) { // ~, userId, itemName, quantity
+            String itemName = itemName(record, 2, fieldCount - 1);
+            int quantity;
+            try {
+                quantity = record.intField(fieldCount - 1);
+            } catch (NumberFormatException e) {
+                return; // Skip malformed records
+            }
+            for (PantryItem item : items) {
+                if (item.getItemName().equals(itemName)) {
+                    item.setQuantity(quantity);
+                }
+            }
+        } else if (fieldCount >= 6) {
+            PantryItem item = item(record);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+    }
+
+    /**
+     * Decodes an item record: userId, itemName, quantity, unit, expirationDate, category.
+     *
+     * @return The item, or null if its quantity or expiration date is malformed
+     */
+    private static PantryItem item(MappedRecordReader.Record record) throws IOException {
+        int fieldCount = record.fieldCount();
+        try {
+            return new PantryItem(itemName(record, 1, fieldCount - 4), record.intField(fieldCount - 4),
+                    record.field(fieldCount - 3), record.dateField(fieldCount - 2), record.field(fieldCount - 1));
+        } catch (NumberFormatException | DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks that an item record's quantity and expiration date can be decoded.
+     */
+    private static boolean isWellFormed(MappedRecordReader.Record record) throws IOException {
+        int fieldCount = record.fieldCount();
+        try {
+            record.intField(fieldCount - 4);
+            record.dateField(fieldCount - 2);
+            return true;
+        } catch (NumberFormatException | DateTimeException e) {
+            return false;
+        }
+    }
+
+    private static String itemName(MappedRecordReader.Record record, int from, int to) throws IOException {
+        return to - from == 1 ? record.field(from) : record.rawFields(from, to);
+    }
+
+    private static int countMatches(List<PantryItem> items, String itemName) {
+        int matches = 0;
+        for (PantryItem item : items) {
+            if (item.getItemName().equals(itemName)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Queues one record to be appended to the file.
+     * The record is indexed once it has been written and the next read refreshes the index.
+     */
+    private void append(String record) throws IOException {
+        used = true;
+        unindexedOwnBytes += WriteBehindQueue.shared().append(filePath, record);
+    }
+
+    /**
+     * Brings the index up to date with the file on disk.
+     * On first use, or when the file was replaced, a matching snapshot is loaded and only the log
+     * past it is scanned. Records appended by someone else are indexed incrementally.
+     * Reads of the log go through {@link #indexedFile}, so they see the file the index was built from
+     * even if another process compacts it in the meantime.
+     *
+     * <p>Our own appends were announced when they were made. If the new part of the file holds more
+     * bytes than we appended, or the file was replaced, another process changed it: the expiry index
+     * is dropped and listeners are {@linkplain Listener#reset reset}.</p>
+     */
+    private void refreshIndex() throws IOException {
+        used = true;
+        // Shared with appenders, so no other process can swap the file while we look at it
+        try (StripedFileLock.Handle lock = StripedFileLock.shared(filePath)) {
+            boolean replaced = false;
+            long size = 0;
+            if (Files.exists(filePath)) {
+                Object key = Files.readAttributes(filePath, BasicFileAttributes.class).fileKey();
+                if (indexedFile == null || !indexedFile.isOpen() || key == null || !key.equals(fileKey)) {
+                    replaced = fileKey != null && !fileKey.equals(key);
+                    closeIndexedFile();
+                    indexedFile = FileChannel.open(filePath, StandardOpenOption.READ);
+                    fileKey = key;
+                }
+                size = indexedFile.size();
+            } else {
+                closeIndexedFile();
+                fileKey = null;
+            }
+
+            boolean first = indexedLength < 0;
+            boolean foreign = replaced || (!first && size < indexedLength);
+            if (size < indexedLength || indexedLength < 0 || replaced) {
+                index.clear();
+                expiryIndex = null; // The file was replaced; rebuild from it on the next query
+                indexedLength = 0;
+                recordCount = 0;
+                garbageCount = 0;
+                snapshot = PantrySnapshot.load(snapshotPath, filePath);
+                if (snapshot != null) {
+                    indexedLength = snapshot.logLength();
+                    recordCount = snapshot.itemCount();
+                }
+            }
+            if (size > indexedLength) {
+                long from = indexedLength;
+                try (MappedRecordReader reader = new MappedRecordReader(indexedFile)) {
+                    indexedLength = indexRange(reader, indexedLength, size, index);
+                }
+                long indexed = indexedLength - from;
+                foreign |= !first && indexed > unindexedOwnBytes;
+                unindexedOwnBytes = Math.max(0, unindexedOwnBytes - indexed);
+                compactIfNeeded();
+            }
+            if (foreign) {
+                expiryIndex = null; // Rebuilt from the file on the next query
+                for (Listener listener : listeners) {
+                    listener.reset();
+                }
+            }
+        }
+    }
+
+    private void closeIndexedFile() throws IOException {
+        if (indexedFile != null) {
+            indexedFile.close();
+            indexedFile = null;
+        }
+    }
+
+    /**
+     * Scans a byte range of a pantry file and records the offset of every line under its userId.
+     * Only the leading fields are looked at, straight from the mapped bytes; a userId is decoded
+     * only when it differs from the previous line's.
+     *
+     * @return The offset just past the last complete line; a trailing partial line is indexed once completed
+     */
+    private long indexRange(MappedRecordReader reader, long from, long to, Map<String, OffsetList> target) throws IOException {
+        return reader.forEachRecord(from, to, new MappedRecordReader.RecordHandler() {
+            private byte[] lastUserId = new byte[0];
+            private OffsetList lastOffsets;
+
+            @Override
+            public void record(MappedRecordReader.Record record) throws IOException {
+                boolean tombstone = record.fieldEquals(0, TOMBSTONE_BYTES);
+                boolean update = !tombstone && record.fieldEquals(0, UPDATE_BYTES);
+                int keyField = tombstone || update ? 1 : 0; // Marked records carry the userId second
+                if (record.fieldCount() <= keyField + 1) {
+                    return;
+                }
+
+                if (lastOffsets == null || !record.fieldEquals(keyField, lastUserId)) {
+                    String userId = record.field(keyField);
+                    lastUserId = userId.getBytes(StandardCharsets.UTF_8);
+                    lastOffsets = target.computeIfAbsent(userId, key -> new OffsetList());
+                }
+                lastOffsets.add(record.offset());
+                recordCount++;
+                if (tombstone) {
+                    garbageCount += 2; // Assume a tombstone hides one item
+                } else if (update) {
+                    garbageCount++;
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues a background compaction once enough of the file is dead records.
+     */
+    private void compactIfNeeded() {
+        if (compacting || garbageCount < COMPACTION_MIN_GARBAGE || garbageRatio() < COMPACTION_THRESHOLD) {
+            return;
+        }
+        compacting = true;
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("Error compacting pantry file: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Rewrites the file with only live items, grouped by user, and writes a matching snapshot.
+     * The bulk of the copy runs without holding the store lock; records appended meanwhile
+     * are carried over verbatim and re-indexed before the new file replaces the old one.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void compact() throws IOException {
+        long start = System.nanoTime();
+        try {
+            compactLog();
+        } finally {
+            COMPACT_LATENCY.recordSince(start);
+        }
+    }
+
+    private void compactLog() throws IOException {
+        Map<String, long[]> frozen = new HashMap<>();
+        PantrySnapshot base;
+        long end;
+        Object frozenKey;
+        synchronized (this) {
+            refreshIndex();
+            end = indexedLength;
+            frozenKey = fileKey;
+            base = snapshot;
+            for (String userId : userIds(snapshot, index.keySet())) {
+                OffsetList offsets = index.get(userId);
+                frozen.put(userId, offsets != null ? offsets.toArray() : new long[0]);
+            }
+        }
+
+        // Open the file we indexed; if another process has compacted it since, our offsets are stale
+        MappedRecordReader source;
+        try (StripedFileLock.Handle lock = StripedFileLock.shared(filePath)) {
+            if (!Objects.equals(Files.readAttributes(filePath, BasicFileAttributes.class).fileKey(), frozenKey)) {
+                return;
+            }
+            source = new MappedRecordReader(filePath);
+        }
+
+        // Copy the live items of every user, read from the part of the file that no longer changes,
+        // into a temporary file of our own, as another process may be compacting too
+        Path tempPath;
+        try {
+            tempPath = Files.createTempFile(filePath.getParent(), filePath.getFileName().toString(), ".compact");
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+        Map<String, OffsetList> compacted = new HashMap<>();
+        long compactedLength = 0;
+        long liveCount = 0;
+        try (PantrySnapshot.Writer snapshotWriter = new PantrySnapshot.Writer(snapshotPath)) {
+            try (source;
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempPath), 1 << 16)) {
+                for (Map.Entry<String, long[]> entry : frozen.entrySet()) {
+                    String userId = entry.getKey();
+                    List<PantryItem> items = merge(userId, base, entry.getValue(), source);
+
+                    OffsetList offsets = new OffsetList();
+                    for (PantryItem item : items) {
+                        byte[] bytes = CsvCodec.record(userId, item.getItemName(), item.getQuantity(), item.getUnit(),
+                                item.getExpirationDate(), item.getCategory()).getBytes(StandardCharsets.UTF_8);
+                        out.write(bytes);
+                        offsets.add(compactedLength);
+                        compactedLength += bytes.length;
+                    }
+                    if (!offsets.isEmpty()) {
+                        compacted.put(userId, offsets);
+                        liveCount += offsets.size();
+                    }
+                    snapshotWriter.writeUser(userId, items);
+                }
+            }
+
+            long copiedLength = compactedLength;
+            long copiedCount = liveCount;
+            synchronized (this) {
+                // Hold back queued appends so nothing is written to the old file after its tail is copied
+                // and hold off appenders in other processes while the file is swapped
+                WriteBehindQueue.shared().runExclusive(filePath, () -> {
+                    try (StripedFileLock.Handle lock = StripedFileLock.exclusive(filePath)) {
+                        swapCompacted(tempPath, end, frozenKey, copiedLength, copiedCount, compacted, snapshotWriter);
+                    }
+                });
+                snapshotWritten();
+            }
+        } finally {
+            Files.deleteIfExists(tempPath); // Already moved into place unless the compaction failed
+        }
+    }
+
+    /**
+     * Appends the records written since the copy started to the compacted file and moves it into place.
+     * Runs with appends held back in every process.
+     */
+    private void swapCompacted(Path tempPath, long end, Object frozenKey, long copiedLength, long copiedCount,
+                               Map<String, OffsetList> compacted, PantrySnapshot.Writer snapshotWriter) throws IOException {
+        refreshIndex();
+        if (indexedLength < end || !Objects.equals(fileKey, frozenKey)) {
+            Files.deleteIfExists(tempPath); // The file was replaced underneath us; try again later
+            return;
+        }
+
+        // Carry over records appended while we were copying
+        long tailEnd;
+        try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(tempPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long size = source.size();
+            transferFully(source, end, size - end, target);
+            tailEnd = copiedLength + (size - end);
+        }
+
+        recordCount = copiedCount;
+        garbageCount = 0;
+        FileChannel compactedFile = FileChannel.open(tempPath, StandardOpenOption.READ);
+        try (MappedRecordReader reader = new MappedRecordReader(compactedFile)) {
+            indexedLength = indexRange(reader, copiedLength, tailEnd, compacted);
+
+            // The snapshot covers the compacted items; the carried-over tail stays in the log
+            snapshotWriter.finish(tempPath, copiedLength);
+            Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            compactedFile.close();
+            throw e;
+        }
+        closeIndexedFile();
+        indexedFile = compactedFile;
+        fileKey = Files.readAttributes(filePath, BasicFileAttributes.class).fileKey();
+        index.clear();
+        index.putAll(compacted);
+        snapshot = null; // The index now covers the whole file
+    }
+
+    private static void transferFully(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        while (count > 0) {
+            long transferred = source.transferTo(position, count, target);
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    /**
+     * One user's live items as handles: a log offset, or {@code -(snapshot position + 1)} for a snapshot item.
+     * Valid while the user's offsets and the snapshot are the ones it was built from.
+     */
+    private static final class LiveRows {
+        private final String userId;
+        private final OffsetList offsets;               // The user's offsets when built, compared by identity
+        private final int offsetCount;
+        private final PantrySnapshot snapshot;
+        private final long[] handles;
+        private final int size;
+        private final Map<Integer, Integer> quantities; // row -> quantity set by a later update record
+
+        private LiveRows(String userId, OffsetList offsets, int offsetCount, PantrySnapshot snapshot,
+                         long[] handles, int size, Map<Integer, Integer> quantities) {
+            this.userId = userId;
+            this.offsets = offsets;
+            this.offsetCount = offsetCount;
+            this.snapshot = snapshot;
+            this.handles = handles;
+            this.size = size;
+            this.quantities = quantities;
+        }
+
+        private boolean isCurrent(String userId, OffsetList offsets, PantrySnapshot snapshot) {
+            return this.userId.equals(userId) && this.offsets == offsets && this.snapshot == snapshot
+                    && offsetCount == (offsets != null ? offsets.size() : 0);
+        }
+
+        private boolean hasLogRows() {
+            return offsetCount > 0;
+        }
+
+        private String nameAt(int row, MappedRecordReader reader) throws IOException {
+            long handle = handles[row];
+            if (handle < 0) {
+                return snapshot.nameAt(-(handle + 1));
+            }
+            MappedRecordReader.Record record = reader.recordAt(handle);
+            return itemName(record, 1, record.fieldCount() - 4);
+        }
+    }
+
+    /**
+     * A growable list of ascending record offsets.
+     */
+    private static final class OffsetList {
+        private long[] offsets = new long[4];
+        private int size;
+
+        void add(long offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        long get(int i) {
+            return offsets[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(offsets, size);
+        }
+    }
+}
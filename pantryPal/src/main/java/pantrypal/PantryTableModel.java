@@ -0,0 +1,223 @@
+package pantrypal;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * A table model that shows one user's pantry straight from the {@link PantryStore}.
+ * Rows are read in pages of {@value #PAGE_SIZE} on a background executor when the table first asks
+ * for them, and only the most recently used {@value #MAX_CACHED_PAGES} pages are kept, so opening and
+ * scrolling a very large pantry costs the same as a small one. Rows still loading show as blank, and so
+ * do rows whose page could not be read, until the next {@link #reload()}.
+ *
+ * <p>Must be used from the Event Dispatch Thread. Changes made through the model fire row-level
+ * events for just the rows they touch.</p>
+ */
+@SuppressWarnings("serial")
+public class PantryTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = {"Item Name", "Quantity", "Unit", "Expiration Date", "Category"};
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 16;
+
+    private final PantryStore store;
+    private final String userId;
+    private final Executor executor;
+    private final Map<Integer, List<PantryItem>> pages = new LinkedHashMap<>(MAX_CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<PantryItem>> eldest) {
+            return size() > MAX_CACHED_PAGES; // Least recently shown page goes first
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>(); // Pages with a read in flight
+    private final Set<Integer> failed = new HashSet<>();  // Pages whose read failed; not retried until a reload
+    private int rowCount;
+    private int generation; // Bumped whenever rows shift, so reads started before then are dropped
+
+    /**
+     * Constructs an empty model. Call {@link #reload()} to show the pantry.
+     *
+     * @param store    The store holding the pantry
+     * @param userId   The ID of the user whose pantry is shown
+     * @param executor Runs the store reads
+     */
+    public PantryTableModel(PantryStore store, String userId, Executor executor) {
+        this.store = store;
+        this.userId = userId;
+        this.executor = executor;
+    }
+
+    /**
+     * Counts the user's items in the background and then shows them from the top.
+     *
+     * @return A future that completes, on the EDT, once the table has its new size
+     */
+    public CompletableFuture<Integer> reload() {
+        return onEdt(supply(() -> store.count(userId)), count -> {
+            generation++;
+            pages.clear();
+            loading.clear();
+            failed.clear();
+            rowCount = count;
+            fireTableDataChanged();
+        });
+    }
+
+    /**
+     * Saves an item in the background and then appends it as a new row.
+     *
+     * @param item The item to add
+     * @return A future that completes, on the EDT, once the row is shown
+     */
+    public CompletableFuture<PantryItem> add(PantryItem item) {
+        CompletableFuture<PantryItem> saved = supply(() -> {
+            store.add(userId, item.getItemName(), String.valueOf(item.getQuantity()), item.getUnit(),
+                    item.getExpirationDate(), item.getCategory());
+            return item;
+        });
+        return onEdt(saved, added -> {
+            int row = rowCount++;
+            List<PantryItem> page = pages.get(row / PAGE_SIZE);
+            if (page != null && page.size() == row % PAGE_SIZE) {
+                page.add(added); // The last page is cached; keep it complete
+            }
+            fireTableRowsInserted(row, row);
+        });
+    }
+
+    /**
+     * Removes every item with the given name in the background, then deletes just those rows.
+     *
+     * @param itemName The name of the items to remove
+     * @return A future that completes, on the EDT, with the number of rows removed
+     */
+    public CompletableFuture<Integer> removeAll(String itemName) {
+        CompletableFuture<int[]> removed = supply(() -> {
+            synchronized (store) { // Find and remove the same rows, with no append in between
+                int[] rows = store.rowsNamed(userId, itemName);
+                store.remove(userId, itemName);
+                return rows;
+            }
+        });
+        return onEdt(removed, rows -> {
+            if (rows.length == 0) {
+                return;
+            }
+
+            // Rows from the first removed one on have shifted; forget them and any read in flight
+            generation++;
+            loading.clear();
+            pages.keySet().removeIf(page -> page >= rows[0] / PAGE_SIZE);
+            for (int i = rows.length - 1; i >= 0; i--) {
+                rowCount--;
+                fireTableRowsDeleted(rows[i], rows[i]);
+            }
+        }).thenApply(rows -> rows.length);
+    }
+
+    /**
+     * Finds the rows holding items that are expired on the given date.
+     *
+     * @param today The date to check against
+     * @return A future that completes, on the EDT, with the expired rows in ascending order
+     */
+    public CompletableFuture<int[]> expiredRows(LocalDate today) {
+        return onEdt(supply(() -> store.expiredRows(userId, today)), rows -> { });
+    }
+
+    /**
+     * Returns the item shown in a row, if its page is loaded.
+     *
+     * @param row The row
+     * @return The item, or null if the row is still loading
+     */
+    public PantryItem getItemAt(int row) {
+        List<PantryItem> page = pages.get(row / PAGE_SIZE);
+        if (page == null || row % PAGE_SIZE >= page.size()) {
+            loadPage(row / PAGE_SIZE);
+            return null;
+        }
+        return page.get(row % PAGE_SIZE);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 1 ? Integer.class : Object.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        PantryItem item = getItemAt(row);
+        if (item == null) {
+            return null;
+        }
+        return switch (column) {
+            case 0 -> item.getItemName();
+            case 1 -> item.getQuantity();
+            case 2 -> item.getUnit();
+            case 3 -> item.getExpirationDate();
+            default -> item.getCategory();
+        };
+    }
+
+    private void loadPage(int page) {
+        if (failed.contains(page) || !loading.add(page)) {
+            return;
+        }
+        int startGeneration = generation;
+        int from = page * PAGE_SIZE;
+        onEdt(supply(() -> store.readRange(userId, from, from + PAGE_SIZE)), items -> {
+            if (generation != startGeneration) {
+                return; // Rows shifted while reading; the table will ask again
+            }
+            loading.remove(page);
+            pages.put(page, new ArrayList<>(items));
+            if (!items.isEmpty()) {
+                fireTableRowsUpdated(from, Math.min(rowCount, from + items.size()) - 1);
+            }
+        }).exceptionally(error -> {
+            // Repaints would ask again at once; wait for a reload instead
+            SwingUtilities.invokeLater(() -> {
+                if (generation == startGeneration) {
+                    loading.remove(page);
+                    failed.add(page);
+                }
+            });
+            System.err.println("Error reading pantry rows: " + error.getMessage());
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> supply(PantryService.IOSupplier<T> task) {
+        return PantryService.supply(task, executor);
+    }
+
+    /**
+     * Applies a result to the model on the EDT, then completes with it.
+     */
+    private static <T> CompletableFuture<T> onEdt(CompletableFuture<T> future, Consumer<T> update) {
+        return future.thenApplyAsync(result -> {
+            update.accept(result);
+            return result;
+        }, SwingUtilities::invokeLater);
+    }
+}
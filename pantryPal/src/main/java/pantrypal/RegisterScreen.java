@@ -3,7 +3,6 @@ package pantrypal;
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.IOException;
 
 /**
  * The RegisterScreen class represents the user interface for the registration process.
@@ -64,26 +63,25 @@ public class RegisterScreen extends JFrame {
                 String username = usernameField.getText();
                 String password = new String(passwordField.getPassword());
 
-                try {
-                    // Create a new user object
-                    User newUser = new User(username, password);
-                    
-                    // Register the user in the PantryApp
-                    app.registerUser(newUser);
-                    
+                // Check the username, hash and save off the EDT, then come back to update the screen
+                registerButton.setEnabled(false);
+                PantryService.onEdt(app.getService().register(username, password), user -> {
                     // Show success message
                     JOptionPane.showMessageDialog(RegisterScreen.this, "Registration successful!");
-                    
+
                     // Navigate to the login screen after registration
                     LoginScreen loginScreen = new LoginScreen(app);
                     loginScreen.setVisible(true);
                     dispose(); // Close the register screen
-                } catch (IllegalArgumentException ex) {
-                    // Show error message if the username already exists8
-                    JOptionPane.showMessageDialog(RegisterScreen.this, "Username already exists.", "Error", JOptionPane.ERROR_MESSAGE);
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
+                }, error -> {
+                    registerButton.setEnabled(true);
+                    if (error instanceof IllegalArgumentException) {
+                        // Show error message if the username already exists
+                        JOptionPane.showMessageDialog(RegisterScreen.this, "Username already exists.", "Error", JOptionPane.ERROR_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(RegisterScreen.this, "Could not save the new user: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
             }
         });
 
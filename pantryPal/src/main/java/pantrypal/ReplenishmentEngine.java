@@ -0,0 +1,357 @@
+package pantrypal;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Keeps a shopping list of low-stock items for each user, derived from per-item par levels.
+ * An item is suggested once the unexpired quantity on hand drops below its par level; the
+ * suggested quantity tops it back up, and the priority rises with the shortfall and with how
+ * soon the remaining stock expires.
+ *
+ * <p>The engine listens to its {@link PantryStore}. Only item names with a par level are tracked,
+ * and each change re-derives just the names it touches, so a change costs the same however large
+ * the pantry is. Bulk adds through {@link PantryStore#addAll} are handled in one pass. A user's
+ * state is built from one read of their pantry the first time it is needed.</p>
+ *
+ * <p>Par levels are saved per user in {@code ~/PantryPal/par/<userId>.csv} as {@code itemName,parLevel}
+ * records; the last record for a name wins and 0 clears it. Once at least {@value #COMPACTION_MIN_GARBAGE}
+ * records are overridden and they make up {@value #COMPACTION_THRESHOLD} of the file, the next change
+ * rewrites it with one record per tracked name.</p>
+ */
+public class ReplenishmentEngine implements PantryStore.Listener {
+    private static final String DIRECTORY_NAME = "PantryPal";
+    private static final String PAR_LEVELS_DIRECTORY_NAME = "par";
+    private static final int SOON_DAYS = 3; // Stock expiring within this many days makes an item urgent
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    private static final int COMPACTION_MIN_GARBAGE = 64; // Don't bother compacting tiny files
+    private static final Map<PantryStore, ReplenishmentEngine> engines = new HashMap<>();
+
+    private final PantryStore store;
+    private final Map<String, UserState> users = new HashMap<>(); // userId -> par levels, stock and suggestions
+
+    /**
+     * One user's par levels, the stock of each item name that has one, and the derived list.
+     */
+    private static final class UserState {
+        private final Map<String, Stock> stocks = new HashMap<>(); // Item name -> stock, for names with a par level
+        private final ShoppingList suggestions = new ShoppingList();
+        private LocalDate derivedOn;                               // The date the suggestions were derived for
+        private long parRecords;                                   // Records in the par level file
+    }
+
+    /**
+     * The items on hand under one name, and the par level to keep them at.
+     */
+    private static final class Stock {
+        private final String itemName;
+        private int parLevel;
+        private final List<PantryItem> items = new ArrayList<>(); // Copies of the user's items with this name
+
+        private Stock(String itemName, int parLevel) {
+            this.itemName = itemName;
+            this.parLevel = parLevel;
+        }
+    }
+
+    private ReplenishmentEngine(PantryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns the engine for a store, creating it and starting to listen to the store on first use.
+     *
+     * @param store The store holding the pantries
+     * @return The engine listening to that store
+     */
+    public static synchronized ReplenishmentEngine forStore(PantryStore store) {
+        return engines.computeIfAbsent(store, key -> {
+            ReplenishmentEngine engine = new ReplenishmentEngine(key);
+            key.addListener(engine);
+            return engine;
+        });
+    }
+
+    /**
+     * Sets the par level of an item and saves it. Only the user's items with that name are re-derived.
+     *
+     * @param userId   The ID of the user
+     * @param itemName The name of the item
+     * @param parLevel The quantity to keep on hand; 0 stops tracking the item
+     * @throws IOException If an I/O error occurs
+     */
+    public void setParLevel(String userId, String itemName, int parLevel) throws IOException {
+        if (parLevel < 0) {
+            throw new IllegalArgumentException("Par level cannot be negative.");
+        }
+        synchronized (store) { // Store lock first, as for listener calls
+            synchronized (this) {
+                UserState state = state(userId);
+                WriteBehindQueue.shared().append(getParLevelPath(userId), CsvCodec.record(itemName, parLevel));
+                state.parRecords++;
+                if (parLevel == 0) {
+                    state.stocks.remove(itemName);
+                    state.suggestions.removeItem(itemName);
+                    state.suggestions.markSaved();
+                    compactIfNeeded(userId, state);
+                    return;
+                }
+
+                Stock stock = state.stocks.get(itemName);
+                if (stock == null) {
+                    stock = new Stock(itemName, parLevel);
+                    for (PantryItem item : store.read(userId)) {
+                        if (item.getItemName().equals(itemName)) {
+                            stock.items.add(new PantryItem(item));
+                        }
+                    }
+                    state.stocks.put(itemName, stock);
+                }
+                stock.parLevel = parLevel;
+                derive(state, stock);
+                compactIfNeeded(userId, state);
+            }
+        }
+    }
+
+    /**
+     * Returns an item's par level.
+     *
+     * @param userId   The ID of the user
+     * @param itemName The name of the item
+     * @return The par level, or 0 if none is set
+     * @throws IOException If an I/O error occurs
+     */
+    public int getParLevel(String userId, String itemName) throws IOException {
+        synchronized (store) {
+            synchronized (this) {
+                Stock stock = state(userId).stocks.get(itemName);
+                return stock != null ? stock.parLevel : 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the items a user is short of, in the order they first ran low.
+     * Suggestions are re-derived at most once a day for expiry to be taken into account.
+     *
+     * @param userId The ID of the user
+     * @return A read-only list of suggested shopping list items
+     * @throws IOException If an I/O error occurs
+     */
+    public List<ShoppingListItem> suggestions(String userId) throws IOException {
+        synchronized (store) {
+            synchronized (this) {
+                UserState state = state(userId);
+                if (!LocalDate.now().equals(state.derivedOn)) {
+                    for (Stock stock : state.stocks.values()) {
+                        derive(state, stock);
+                    }
+                }
+                return state.suggestions.listItems();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void itemsAdded(String userId, List<PantryItem> items) {
+        UserState state = users.get(userId);
+        if (state == null || state.stocks.isEmpty()) {
+            return; // Built from the store when first needed
+        }
+        Set<Stock> touched = new LinkedHashSet<>();
+        for (PantryItem item : items) {
+            Stock stock = state.stocks.get(item.getItemName());
+            if (stock != null) {
+                stock.items.add(new PantryItem(item));
+                touched.add(stock);
+            }
+        }
+        for (Stock stock : touched) { // Each name once, however many of its items were added
+            derive(state, stock);
+        }
+    }
+
+    @Override
+    public synchronized void itemsRemoved(String userId, String itemName) {
+        Stock stock = stock(userId, itemName);
+        if (stock != null) {
+            stock.items.clear();
+            derive(users.get(userId), stock);
+        }
+    }
+
+    @Override
+    public synchronized void quantityChanged(String userId, String itemName, int quantity) {
+        Stock stock = stock(userId, itemName);
+        if (stock != null) {
+            for (PantryItem item : stock.items) {
+                item.setQuantity(quantity);
+            }
+            derive(users.get(userId), stock);
+        }
+    }
+
+    @Override
+    public synchronized void reset() {
+        users.clear(); // Par levels are on disk; stock is re-read from the store when next needed
+    }
+
+    private Stock stock(String userId, String itemName) {
+        UserState state = users.get(userId);
+        return state != null ? state.stocks.get(itemName) : null;
+    }
+
+    /**
+     * Returns a user's state, loading their par levels and the stock of those items on first use.
+     * Must be called with the store lock held, so no change slips in between the read and the listener.
+     */
+    private UserState state(String userId) throws IOException {
+        store.refresh(); // Resets the stock if another process changed the pantry
+        UserState state = users.get(userId);
+        if (state != null) {
+            return state;
+        }
+
+        state = new UserState();
+        long[] parRecords = new long[1];
+        Map<String, Integer> parLevels = readParLevels(userId, parRecords);
+        state.parRecords = parRecords[0];
+        if (!parLevels.isEmpty()) {
+            for (Map.Entry<String, Integer> parLevel : parLevels.entrySet()) {
+                state.stocks.put(parLevel.getKey(), new Stock(parLevel.getKey(), parLevel.getValue()));
+            }
+            for (PantryItem item : store.read(userId)) { // One pass over the pantry
+                Stock stock = state.stocks.get(item.getItemName());
+                if (stock != null) {
+                    stock.items.add(new PantryItem(item));
+                }
+            }
+            for (Stock stock : state.stocks.values()) {
+                derive(state, stock);
+            }
+        }
+        state.derivedOn = LocalDate.now();
+        users.put(userId, state);
+        return state;
+    }
+
+    /**
+     * Brings one name's suggestion up to date with its stock.
+     */
+    private static void derive(UserState state, Stock stock) {
+        LocalDate today = LocalDate.now();
+        int onHand = 0;
+        LocalDate soonest = null;
+        for (PantryItem item : stock.items) {
+            if (item.isExpired(today) || item.getQuantity() == 0) {
+                continue;
+            }
+            onHand += item.getQuantity();
+            if (soonest == null || item.getExpirationDate().isBefore(soonest)) {
+                soonest = item.getExpirationDate();
+            }
+        }
+
+        int shortfall = stock.parLevel - onHand;
+        if (shortfall <= 0) {
+            state.suggestions.removeItem(stock.itemName);
+        } else {
+            long daysLeft = soonest != null ? ChronoUnit.DAYS.between(today, soonest) : 0;
+            state.suggestions.replaceItem(new ShoppingListItem(stock.itemName, shortfall,
+                    priority((double) shortfall / stock.parLevel, daysLeft)));
+        }
+        state.suggestions.markSaved(); // Derived, never saved
+        state.derivedOn = today;
+    }
+
+    /**
+     * Ranks a suggestion by the share of its par level that is missing and the days until the
+     * remaining stock expires (0 when nothing usable is left).
+     */
+    static String priority(double missingShare, long daysLeft) {
+        if (missingShare >= 0.75 || daysLeft <= SOON_DAYS) {
+            return "High";
+        }
+        if (missingShare >= 0.4 || daysLeft <= 2 * SOON_DAYS) {
+            return "Medium";
+        }
+        return "Low";
+    }
+
+    /**
+     * Rewrites a user's par level file with one record per tracked name, once overridden records
+     * make up enough of it.
+     */
+    private static void compactIfNeeded(String userId, UserState state) throws IOException {
+        long garbage = state.parRecords - state.stocks.size();
+        if (garbage < COMPACTION_MIN_GARBAGE || (double) garbage / state.parRecords < COMPACTION_THRESHOLD) {
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        for (Stock stock : state.stocks.values()) {
+            records.append(CsvCodec.record(stock.itemName, stock.parLevel));
+        }
+
+        Path path = getParLevelPath(userId);
+        // Queued records are written first, then no append can land between the read and the move
+        WriteBehindQueue.shared().runExclusive(path, () -> {
+            try (StripedFileLock.Handle lock = StripedFileLock.exclusive(path)) {
+                Path tempPath = Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp");
+                try {
+                    Files.writeString(tempPath, records, StandardCharsets.UTF_8);
+                    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tempPath);
+                }
+            }
+        });
+        state.parRecords = state.stocks.size();
+    }
+
+    /**
+     * Reads a user's par levels; later records override earlier ones.
+     */
+    private static Map<String, Integer> readParLevels(String userId, long[] recordCount) throws IOException {
+        Map<String, Integer> parLevels = new LinkedHashMap<>();
+        Path path = getParLevelPath(userId);
+        WriteBehindQueue.shared().flush(path); // Make queued par levels visible
+        try (MappedRecordReader reader = MappedRecordReader.openIfExists(path)) {
+            if (reader != null) {
+                reader.forEachRecord(0, reader.size(), record -> {
+                    recordCount[0]++;
+                    if (record.fieldCount() != 2) {
+                        return;
+                    }
+                    try {
+                        int parLevel = record.intField(1);
+                        if (parLevel > 0) {
+                            parLevels.put(record.field(0), parLevel);
+                        } else {
+                            parLevels.remove(record.field(0));
+                        }
+                    } catch (NumberFormatException e) {
+                        // Skip malformed records
+                    }
+                });
+            }
+        }
+        return parLevels;
+    }
+
+    /**
+     * Returns the path of a user's par level file.
+     *
+     * @param userId The ID of the user
+     * @return The Path to the user's par level file
+     */
+    private static Path getParLevelPath(String userId) {
+        return Paths.get(System.getProperty("user.home"), DIRECTORY_NAME, PAR_LEVELS_DIRECTORY_NAME,
+                URLEncoder.encode(userId, StandardCharsets.UTF_8) + ".csv");
+    }
+}
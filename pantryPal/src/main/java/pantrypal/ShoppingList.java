@@ -1,33 +1,56 @@
 package pantrypal;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Represents a shopping list for managing items to be purchased.
- * 
+ * The list remembers which item names changed since it was last saved, so
+ * {@link ShoppingListLog} only has to write those entries.
+ *
  * @author Kenyon Hanson
  */
 
 public class ShoppingList {
-    private List<ShoppingListItem> items; // List of shopping list items
+    private final Map<String, ShoppingListItem> items; // Shopping list items by normalized name, in insertion order
+    private final Map<String, String> dirtyNames = new LinkedHashMap<>(); // Normalized name -> name, changed since the last save
+    private boolean cleared; // True if the list was cleared since the last save
+    private List<ShoppingListItem> view; // Read-only copy of the items, dropped on every change
 
     /**
      * Constructor to initialize the shopping list.
      */
-    
+
     public ShoppingList() {
-        this.items = new ArrayList<>();
+        this.items = new LinkedHashMap<>();
     }
 
     /**
-     * Adds an item to the shopping list.
+     * Adds an item to the shopping list. If an item with the same name (ignoring case) is
+     * already on the list, the new quantity is added to it and the existing item is kept.
      *
      * @param item The item to be added.
      */
-    
-    public void addItem(ShoppingListItem item) {
-        items.add(item);
+
+    public synchronized void addItem(ShoppingListItem item) {
+        ShoppingListItem existing = items.putIfAbsent(normalize(item.getItemName()), item);
+        if (existing != null) {
+            existing.updateQuantity(item.getQuantity());
+        }
+        changed(item.getItemName());
+    }
+
+    /**
+     * Finds an item by its name, ignoring case.
+     *
+     * @param itemName The name of the item.
+     * @return The item, or null if it is not on the list.
+     */
+
+    public synchronized ShoppingListItem getItem(String itemName) {
+        return items.get(normalize(itemName));
     }
 
     /**
@@ -36,26 +59,141 @@ public class ShoppingList {
      * @param itemName The name of the item to be removed.
      * @return true if the item was removed successfully, false otherwise.
      */
-    
-    public boolean removeItem(String itemName) {
-        return items.removeIf(item -> item.getItemName().equalsIgnoreCase(itemName));
+
+    public synchronized boolean removeItem(String itemName) {
+        boolean removed = items.remove(normalize(itemName)) != null;
+        if (removed) {
+            changed(itemName);
+        }
+        return removed;
+    }
+
+    /**
+     * Changes the quantity of the item with the given name.
+     * Use this rather than {@link ShoppingListItem#updateQuantity} so the change is saved.
+     *
+     * @param itemName The name of the item.
+     * @param amount   The amount to change the quantity by. Can be positive or negative.
+     * @return true if an item with that name was found, false otherwise.
+     */
+
+    public synchronized boolean updateQuantity(String itemName, int amount) {
+        ShoppingListItem item = items.get(normalize(itemName));
+        if (item == null) {
+            return false;
+        }
+        item.updateQuantity(amount);
+        changed(itemName);
+        return true;
+    }
+
+    /**
+     * Retrieves the list of all items in the shopping list, in the order they were added.
+     * The list is read-only and is only rebuilt after the shopping list changes, so
+     * repeated calls are cheap.
+     *
+     * @return A read-only list of shopping list items.
+     */
+
+    public synchronized List<ShoppingListItem> listItems() {
+        if (view == null) {
+            view = List.copyOf(items.values());
+        }
+        return view;
     }
 
     /**
-     * Retrieves the list of all items in the shopping list.
+     * Gets the number of items in the shopping list.
      *
-     * @return A list of shopping list items.
+     * @return The item count.
      */
-    
-    public List<ShoppingListItem> listItems() {
-        return new ArrayList<>(items); // Return a copy to avoid modification.
+
+    public synchronized int size() {
+        return items.size();
     }
 
     /**
      * Clears all items from the shopping list.
      */
-    
-    public void clearList() {
+
+    public synchronized void clearList() {
         items.clear();
+        view = null;
+        dirtyNames.clear();
+        cleared = true;
+    }
+
+    /**
+     * Checks whether the list has changes that have not been saved.
+     *
+     * @return true if the list changed since the last save, false otherwise.
+     */
+
+    public synchronized boolean isDirty() {
+        return cleared || !dirtyNames.isEmpty();
+    }
+
+    /**
+     * Forgets all unsaved changes, for example after the whole list has been written out.
+     */
+
+    public synchronized void markSaved() {
+        dirtyNames.clear();
+        cleared = false;
+    }
+
+    /**
+     * Takes the changes made since the last save and marks the list as saved.
+     * Called by {@link ShoppingListLog} while holding this list's lock.
+     *
+     * @return Each name that changed, with the item now stored under it (null if it was removed).
+     */
+
+    synchronized Map<String, ShoppingListItem> takeChanges() {
+        Map<String, ShoppingListItem> changes = new LinkedHashMap<>();
+        for (Map.Entry<String, String> dirty : dirtyNames.entrySet()) {
+            changes.put(dirty.getValue(), items.get(dirty.getKey()));
+        }
+        markSaved();
+        return changes;
+    }
+
+    /**
+     * Stores an item in place of any item with the same name, keeping that item's position.
+     * Used to replay a saved list; the change is not marked as unsaved.
+     *
+     * @param item The item to store.
+     */
+
+    synchronized void replaceItem(ShoppingListItem item) {
+        items.put(normalize(item.getItemName()), item);
+        view = null;
+    }
+
+    /**
+     * Checks whether the list was cleared since the last save. Called by {@link ShoppingListLog}
+     * while holding this list's lock, before {@link #takeChanges()}.
+     *
+     * @return true if the list was cleared.
+     */
+
+    synchronized boolean wasCleared() {
+        return cleared;
+    }
+
+    /**
+     * Normalizes an item name for case-insensitive matching.
+     *
+     * @param itemName The item name.
+     * @return The name in lower case.
+     */
+
+    static String normalize(String itemName) {
+        return itemName.toLowerCase(Locale.ROOT);
+    }
+
+    private void changed(String itemName) {
+        view = null;
+        dirtyNames.putIfAbsent(normalize(itemName), itemName);
     }
 }
@@ -9,7 +9,8 @@ package pantrypal;
 public class ShoppingListItem {
     private final String itemName; // Name of the shopping list item
     private int quantity;          // Quantity of the item
-    private final String priority; // Priority level of the item (e.g., "High", "Medium", "Low")
+    private final int priority;    // SymbolTable id of the priority level (e.g., "High", "Medium", "Low")
+    private final String priorityName; // The priority, when the symbol table was too full to intern it
 
     /**
      * Constructor to create a shopping list item.
@@ -21,7 +22,9 @@ public class ShoppingListItem {
     public ShoppingListItem(String itemName, int quantity, String priority) {
         this.itemName = itemName;
         this.quantity = (quantity > 0) ? quantity : 1; // Ensure positive quantity
-        this.priority = priority != null ? priority : "Medium"; // Default to "Medium" if no priority provided
+        String level = priority != null ? priority : "Medium"; // Default to "Medium" if no priority provided
+        this.priority = SymbolTable.id(level);
+        this.priorityName = this.priority == SymbolTable.UNINTERNED ? level : null;
     }
 
     /**
@@ -48,6 +51,16 @@ public class ShoppingListItem {
      * @return The item priority.
      */
     public String getPriority() {
+        return priority == SymbolTable.UNINTERNED ? priorityName : SymbolTable.name(priority);
+    }
+
+    /**
+     * Gets the {@link SymbolTable} id of the priority, for cheap comparison and grouping.
+     * Priorities the table had no room for share {@link SymbolTable#UNINTERNED}.
+     *
+     * @return The priority id.
+     */
+    public int getPriorityId() {
         return priority;
     }
 
@@ -70,7 +83,7 @@ public class ShoppingListItem {
      */
     @Override
     public String toString() {
-        return itemName + " (Quantity: " + quantity + ", Priority: " + priority + ")";
+        return itemName + " (Quantity: " + quantity + ", Priority: " + getPriority() + ")";
     }
 
     /**
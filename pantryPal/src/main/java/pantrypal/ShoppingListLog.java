@@ -0,0 +1,242 @@
+package pantrypal;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Saves one user's {@link ShoppingList} to its own append-only log file, so loading a list
+ * never reads another user's data. A save appends records for just the item names that changed
+ * since the last save. Once the log holds more than {@value #COMPACTION_RATIO} records per live
+ * item, the next save rewrites it with only the live items.
+ *
+ * <p>Record formats:</p>
+ * <pre>
+ * =,itemName,quantity,priority   (stores the item, replacing any item with the name)
+ * -,itemName                     (removes the item with the name)
+ * </pre>
+ */
+public class ShoppingListLog {
+    private static final String DIRECTORY_NAME = "PantryPal";
+    private static final String SHOPPING_LISTS_DIRECTORY_NAME = "shopping";
+    private static final String REPLACE = "=";
+    private static final String REMOVE = "-";
+    private static final byte[] REPLACE_BYTES = REPLACE.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REMOVE_BYTES = REMOVE.getBytes(StandardCharsets.UTF_8);
+    private static final int COMPACTION_RATIO = 2;
+    private static final int COMPACTION_MIN_RECORDS = 64; // Don't bother compacting tiny logs
+
+    private static final LatencyHistogram LOAD_LATENCY = Metrics.histogram("shopping.load");
+    private static final LatencyHistogram SAVE_LATENCY = Metrics.histogram("shopping.save");
+    private static final LatencyHistogram COMPACT_LATENCY = Metrics.histogram("shopping.compact");
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final String userId;      // The user whose list this is
+    private final Path path;          // The user's log file
+    private final ShoppingList list;  // The list this log saves
+    private long recordCount;         // Records in the log, queued ones included
+    private boolean stale;            // A save failed, so the log no longer matches the list
+
+    /**
+     * Told about every save of any user's shopping list, after its records are queued.
+     * Implementations must be quick and must not save a shopping list themselves.
+     */
+    public interface Listener {
+        /**
+         * Called after a shopping list is saved.
+         *
+         * @param userId   The ID of the user
+         * @param changes  The saved items by name, with null for removed names
+         * @param complete True if the log was rewritten and {@code changes} holds every item on the list,
+         *                 so any name not in it is no longer on the list
+         */
+        void saved(String userId, Map<String, ShoppingListItem> changes, boolean complete);
+    }
+
+    private ShoppingListLog(String userId, Path path, ShoppingList list, long recordCount) {
+        this.userId = userId;
+        this.path = path;
+        this.list = list;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Loads a user's shopping list by replaying their log. Only that user's file is read.
+     *
+     * @param userId The ID of the user
+     * @return The log, holding the loaded list
+     * @throws IOException If an I/O error occurs
+     */
+    public static ShoppingListLog open(String userId) throws IOException {
+        long start = System.nanoTime();
+        Path path = getLogPath(userId);
+        ShoppingList list = new ShoppingList();
+        long[] recordCount = new long[1];
+        WriteBehindQueue.shared().flush(path); // Make queued saves visible
+
+        try (MappedRecordReader reader = MappedRecordReader.openIfExists(path)) {
+            if (reader != null) {
+                reader.forEachRecord(0, reader.size(), record -> {
+                    recordCount[0]++;
+                    apply(list, record);
+                });
+            }
+        } finally {
+            LOAD_LATENCY.recordSince(start);
+        }
+
+        list.markSaved();
+        return new ShoppingListLog(userId, path, list, recordCount[0]);
+    }
+
+    /**
+     * Registers a listener for saves of every user's shopping list.
+     *
+     * @param listener The listener
+     */
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the list this log saves. Changes made to it are written by the next {@link #save()}.
+     *
+     * @return The shopping list
+     */
+    public ShoppingList getList() {
+        return list;
+    }
+
+    /**
+     * Writes the list's unsaved changes. Costs one record per changed item name, unless the list
+     * was cleared, the log is due for compaction or an earlier save failed, in which case the live
+     * items are rewritten.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized void save() throws IOException {
+        long start = System.nanoTime();
+        try {
+            StringBuilder records = new StringBuilder();
+            int count = 0;
+            boolean rewrite;
+            Map<String, ShoppingListItem> changes;
+            synchronized (list) { // Take the changes and, if rewriting, the items they leave in one step
+                rewrite = stale || list.wasCleared() || needsCompaction(list.size());
+                if (rewrite) {
+                    list.markSaved();
+                    changes = new LinkedHashMap<>();
+                    for (ShoppingListItem item : list.listItems()) {
+                        appendItem(records, item);
+                        changes.put(item.getItemName(), item);
+                        count++;
+                    }
+                } else {
+                    changes = list.takeChanges();
+                    for (Map.Entry<String, ShoppingListItem> change : changes.entrySet()) {
+                        if (change.getValue() != null) {
+                            appendItem(records, change.getValue());
+                        } else {
+                            records.append(CsvCodec.record(REMOVE, change.getKey()));
+                        }
+                        count++;
+                    }
+                }
+            }
+
+            try {
+                if (rewrite) {
+                    rewrite(records.toString());
+                    recordCount = count;
+                    stale = false;
+                } else if (count > 0) {
+                    WriteBehindQueue.shared().append(path, records.toString());
+                    recordCount += count;
+                }
+            } catch (IOException e) {
+                stale = true; // The changes were taken from the list; rewrite it in full next time
+                throw e;
+            }
+            for (Listener listener : listeners) {
+                listener.saved(userId, changes, rewrite);
+            }
+        } finally {
+            SAVE_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * @return The number of records in the log
+     */
+    public synchronized long recordCount() {
+        return recordCount;
+    }
+
+    private boolean needsCompaction(int liveItems) {
+        return recordCount >= COMPACTION_MIN_RECORDS && recordCount > (long) COMPACTION_RATIO * liveItems;
+    }
+
+    private static void appendItem(StringBuilder records, ShoppingListItem item) {
+        records.append(CsvCodec.record(REPLACE, item.getItemName(), item.getQuantity(), item.getPriority()));
+    }
+
+    /**
+     * Replaces the log with the given records, without racing appends to it from this or any other process.
+     */
+    private void rewrite(String records) throws IOException {
+        long start = System.nanoTime();
+        try {
+            WriteBehindQueue.shared().runExclusive(path, () -> {
+                try (StripedFileLock.Handle lock = StripedFileLock.exclusive(path)) {
+                    if (records.isEmpty()) {
+                        Files.deleteIfExists(path);
+                        return;
+                    }
+                    Files.createDirectories(path.getParent());
+                    Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+                    Files.writeString(tempPath, records, StandardCharsets.UTF_8);
+                    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            });
+        } finally {
+            COMPACT_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Replays one log record onto a list. Malformed records are skipped.
+     */
+    private static void apply(ShoppingList list, MappedRecordReader.Record record) throws IOException {
+        if (record.fieldCount() == 2 && record.fieldEquals(0, REMOVE_BYTES)) {
+            list.removeItem(record.field(1));
+        } else if (record.fieldCount() == 4 && record.fieldEquals(0, REPLACE_BYTES)) {
+            ShoppingListItem item;
+            try {
+                int quantity = record.intField(2);
+                item = new ShoppingListItem(record.field(1), quantity, record.field(3));
+                if (item.getQuantity() != quantity) {
+                    item.updateQuantity(quantity - item.getQuantity()); // The constructor turns 0 into 1
+                }
+            } catch (NumberFormatException e) {
+                return;
+            }
+            list.replaceItem(item);
+        }
+    }
+
+    /**
+     * Returns the path of a user's shopping list log.
+     *
+     * @param userId The ID of the user
+     * @return The Path to the user's log file
+     */
+    private static Path getLogPath(String userId) {
+        return Paths.get(System.getProperty("user.home"), DIRECTORY_NAME, SHOPPING_LISTS_DIRECTORY_NAME,
+                URLEncoder.encode(userId, StandardCharsets.UTF_8) + ".csv");
+    }
+}
@@ -6,7 +6,6 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.List;
 
 /**
  * A class for displaying the shopping list screen and providing functionalities 
@@ -20,6 +19,7 @@ import java.util.List;
 public class ShoppingListScreen extends JFrame {
 
     private PantryApp app;  // Reference to the PantryApp instance for managing data
+    private ShoppingListLog shoppingListLog;  // The current user's shopping list, once loaded
     private DefaultTableModel model;  // Table model for shopping list data
     private JTable table;  // Table for displaying shopping list items
 
@@ -66,6 +66,10 @@ public class ShoppingListScreen extends JFrame {
         clearListButton.setBounds(380, 270, 120, 30);
         add(clearListButton);
 
+        JButton lowStockButton = new JButton("Add Low Stock");
+        lowStockButton.setBounds(50, 320, 130, 30);
+        add(lowStockButton);
+
         // Back to Home button
         JButton backToHomeButton = new JButton("Back to Home");
         backToHomeButton.setBounds(200, 320, 200, 30);
@@ -102,6 +106,9 @@ public class ShoppingListScreen extends JFrame {
             }
         });
 
+        // Add action listener for Add Low Stock button
+        lowStockButton.addActionListener(e -> addLowStockItems());
+
         // Load existing shopping list items into the table
         loadShoppingList();
 
@@ -115,6 +122,9 @@ public class ShoppingListScreen extends JFrame {
      */
     
     private void openAddItemDialog() {
+        if (!isLoaded()) {
+            return;
+        }
         JPanel panel = new JPanel(new GridLayout(3, 2));  // Panel for input fields
 
         // Input fields
@@ -139,9 +149,16 @@ public class ShoppingListScreen extends JFrame {
                 String priority = priorityField.getText();
 
                 // Add item to the shopping list and table
-                ShoppingListItem newItem = new ShoppingListItem(itemName, quantity, priority);
-                app.addShoppingListItem(newItem);  // Add to PantryApp
-                model.addRow(new Object[] { itemName, quantity, priority });  // Add to table
+                ShoppingList list = shoppingListLog.getList();
+                int row = list.getItem(itemName) != null ? rowOf(itemName) : -1;  // Existing row, if the name is listed
+                list.addItem(new ShoppingListItem(itemName, quantity, priority));  // Add or merge into the user's list
+                saveShoppingList();
+                ShoppingListItem item = list.getItem(itemName);
+                if (row >= 0) {
+                    model.setValueAt(item.getQuantity(), row, 1);  // Show the merged quantity
+                } else {
+                    model.addRow(new Object[] { item.getItemName(), item.getQuantity(), item.getPriority() });  // Add to table
+                }
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "Invalid input. Please check your fields.");
             }
@@ -153,10 +170,14 @@ public class ShoppingListScreen extends JFrame {
      */
     
     private void removeSelectedItem() {
+        if (!isLoaded()) {
+            return;
+        }
         int selectedRow = table.getSelectedRow();  // Get selected row index
         if (selectedRow >= 0) {
             String itemName = (String) model.getValueAt(selectedRow, 0);  // Get item name from table
-            app.removeShoppingListItem(itemName);  // Remove from PantryApp
+            shoppingListLog.getList().removeItem(itemName);  // Remove from the user's list
+            saveShoppingList();
             model.removeRow(selectedRow);  // Remove from table
         } else {
             JOptionPane.showMessageDialog(this, "Please select an item to remove.");
@@ -169,22 +190,93 @@ public class ShoppingListScreen extends JFrame {
      */
     
     private void clearList() {
+        if (!isLoaded()) {
+            return;
+        }
         int response = JOptionPane.showConfirmDialog(this, "Are you sure you want to clear the list?", 
                                                       "Clear List", JOptionPane.YES_NO_OPTION);
         if (response == JOptionPane.YES_OPTION) {
-            app.clearShoppingList();  // Clear list in PantryApp
+            shoppingListLog.getList().clearList();  // Clear the user's list
+            saveShoppingList();
             model.setRowCount(0);  // Clear all rows in the table
         }
     }
 
     /**
-     * Loads the existing shopping list from PantryApp into the table.
+     * Loads the current user's shopping list in the background, then shows it in the table.
      */
-    
+
     private void loadShoppingList() {
-        List<ShoppingListItem> items = app.getShoppingList();  // Get items from PantryApp
-        for (ShoppingListItem item : items) {
-            model.addRow(new Object[] { item.getItemName(), item.getQuantity(), item.getPriority() });  // Add to table
+        PantryService.onEdt(app.getService().shoppingList(app.getCurrentUser()), log -> {
+            shoppingListLog = log;
+            for (ShoppingListItem item : log.getList().listItems()) {
+                model.addRow(new Object[] { item.getItemName(), item.getQuantity(), item.getPriority() });  // Add to table
+            }
+        }, error -> JOptionPane.showMessageDialog(this, "Could not load the shopping list: " + error.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    /**
+     * Adds the items the user has fallen below par on, skipping any already on the list.
+     */
+
+    private void addLowStockItems() {
+        if (!isLoaded()) {
+            return;
+        }
+        PantryService.onEdt(app.getService().lowStock(app.getCurrentUser()), suggestions -> {
+            ShoppingList list = shoppingListLog.getList();
+            int added = 0;
+            for (ShoppingListItem suggestion : suggestions) {
+                if (list.getItem(suggestion.getItemName()) == null) {
+                    ShoppingListItem item = new ShoppingListItem(suggestion.getItemName(), suggestion.getQuantity(),
+                            suggestion.getPriority());
+                    list.addItem(item);
+                    model.addRow(new Object[] { item.getItemName(), item.getQuantity(), item.getPriority() });  // Add to table
+                    added++;
+                }
+            }
+            if (added > 0) {
+                saveShoppingList();
+            } else {
+                JOptionPane.showMessageDialog(this, "Nothing new is running low.");
+            }
+        }, error -> JOptionPane.showMessageDialog(this, "Could not check low stock: " + error.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    /**
+     * Saves the changes just made to the shopping list in the background.
+     */
+
+    private void saveShoppingList() {
+        PantryService.onEdt(app.getService().saveShoppingList(shoppingListLog), done -> { },
+                error -> JOptionPane.showMessageDialog(this, "Could not save the shopping list: " + error.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    /**
+     * Finds the table row showing the item with the given name, ignoring case.
+     */
+
+    private int rowOf(String itemName) {
+        for (int row = 0; row < model.getRowCount(); row++) {
+            if (itemName.equalsIgnoreCase((String) model.getValueAt(row, 0))) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks that the shopping list has finished loading, telling the user if it has not.
+     */
+
+    private boolean isLoaded() {
+        if (shoppingListLog == null) {
+            JOptionPane.showMessageDialog(this, "The shopping list is still loading.");
+            return false;
         }
+        return true;
     }
 }
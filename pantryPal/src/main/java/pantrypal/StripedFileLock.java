@@ -0,0 +1,158 @@
+package pantrypal;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Serializes rewrites of PantryPal's data files against appends to them, within this JVM and
+ * across every PantryPal process sharing the directory.
+ *
+ * <p>Each data directory has one lock file, {@value #LOCK_FILE_NAME}, divided into {@value #STRIPES}
+ * one-byte stripes. A data file maps to a stripe by its name, so per-user files such as
+ * notification segments and shopping list logs are striped by user. A stripe is guarded by an
+ * in-process read-write lock and a {@link FileChannel} byte-range lock on its byte: appends hold it
+ * shared, so any number of threads and processes can append at once, and rewrites, deletes and
+ * compactions hold it exclusively. Files on different stripes never wait for each other.</p>
+ *
+ * <p>A thread may take a shared lock on a stripe it holds exclusively, but not the other way round.</p>
+ */
+public final class StripedFileLock {
+    private static final String LOCK_FILE_NAME = ".pantrypal.lock";
+    private static final int STRIPES = 64;
+    private static final Map<Path, StripedFileLock> directories = new HashMap<>();
+
+    private final Path lockPath;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private FileChannel channel; // Opened on first use and kept open; closing it would drop every lock
+
+    /**
+     * One stripe: the in-process lock and, while anyone here holds it, the lock on its byte.
+     */
+    private static final class Stripe {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private FileLock fileLock;  // Held while sharedHolders > 0
+        private int sharedHolders;  // Threads in this JVM holding the stripe shared, guarded by the stripe
+    }
+
+    /**
+     * A held lock. Closing it releases the lock.
+     */
+    public interface Handle extends AutoCloseable {
+        @Override
+        void close() throws IOException;
+    }
+
+    private StripedFileLock(Path directory) {
+        this.lockPath = directory.resolve(LOCK_FILE_NAME);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Returns the lock guarding the directory that holds a data file.
+     *
+     * @param file A data file
+     * @return The lock for the file's directory
+     */
+    public static synchronized StripedFileLock forFile(Path file) {
+        Path directory = file.toAbsolutePath().normalize().getParent();
+        return directories.computeIfAbsent(directory, StripedFileLock::new);
+    }
+
+    /**
+     * Locks a file for appending. Other appenders may hold it at the same time.
+     *
+     * @param file The data file
+     * @return The held lock
+     * @throws IOException If the lock file cannot be opened or locked
+     */
+    public static Handle shared(Path file) throws IOException {
+        return forFile(file).lockShared(stripeOf(file));
+    }
+
+    /**
+     * Locks a file for rewriting, waiting for appenders in every process to finish.
+     *
+     * @param file The data file
+     * @return The held lock
+     * @throws IOException If the lock file cannot be opened or locked
+     */
+    public static Handle exclusive(Path file) throws IOException {
+        return forFile(file).lockExclusive(stripeOf(file));
+    }
+
+    private static int stripeOf(Path file) {
+        return Math.floorMod(file.getFileName().toString().hashCode(), STRIPES);
+    }
+
+    private Handle lockShared(int index) throws IOException {
+        Stripe stripe = stripes[index];
+        stripe.lock.readLock().lock();
+        if (stripe.lock.isWriteLockedByCurrentThread()) {
+            return () -> stripe.lock.readLock().unlock(); // The exclusive lock already covers the file
+        }
+        try {
+            synchronized (stripe) {
+                if (stripe.sharedHolders == 0) {
+                    stripe.fileLock = channel().lock(index, 1, true);
+                }
+                stripe.sharedHolders++;
+            }
+        } catch (IOException | RuntimeException e) {
+            stripe.lock.readLock().unlock();
+            throw e;
+        }
+        return () -> {
+            try {
+                synchronized (stripe) {
+                    if (--stripe.sharedHolders == 0) {
+                        FileLock fileLock = stripe.fileLock;
+                        stripe.fileLock = null;
+                        fileLock.release();
+                    }
+                }
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        };
+    }
+
+    private Handle lockExclusive(int index) throws IOException {
+        Stripe stripe = stripes[index];
+        stripe.lock.writeLock().lock();
+        if (stripe.lock.getWriteHoldCount() > 1) {
+            return () -> stripe.lock.writeLock().unlock(); // Reentered; the outer hold has the file lock
+        }
+        FileLock fileLock;
+        try {
+            fileLock = channel().lock(index, 1, false);
+        } catch (IOException | RuntimeException e) {
+            stripe.lock.writeLock().unlock();
+            throw e;
+        }
+        return () -> {
+            try {
+                fileLock.release();
+            } finally {
+                stripe.lock.writeLock().unlock();
+            }
+        };
+    }
+
+    private synchronized FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Files.createDirectories(lockPath.getParent());
+            channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,114 @@
+package pantrypal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the small vocabularies repeated on every row, such as units, categories and priorities.
+ * Each distinct string gets a small int id for the life of the JVM, so items hold an int instead of
+ * their own copy of the string, and grouping or comparing by these fields compares ints.
+ * Ids are process-local; files store the strings and map them back to ids when read.
+ *
+ * <p>These values are free text from users and clients, so the table holds at most
+ * {@code pantrypal.symbols.max} strings (4,096 by default) and never forgets one. Past that, new
+ * strings get {@link #UNINTERNED} instead of an id, and the objects holding them keep the plain
+ * string themselves.</p>
+ *
+ * <p>Lookups are lock-free; only interning a new string takes a lock.</p>
+ */
+public final class SymbolTable {
+    /**
+     * The id of a null value.
+     */
+    public static final int NULL_ID = -1;
+
+    /**
+     * The id of a string that is not in the table, because the table was full when it was first seen.
+     */
+    public static final int UNINTERNED = -2;
+
+    private static final int MAX_SIZE = Integer.getInteger("pantrypal.symbols.max", 4096);
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64]; // id -> canonical string
+    private static int count;                                // Ids handed out so far, guarded by the class lock
+
+    private SymbolTable() {
+    }
+
+    /**
+     * Returns the id of a string, interning it on first use if the table has room.
+     *
+     * @param value The string, or null
+     * @return The string's id, {@link #NULL_ID} for null, or {@link #UNINTERNED} if the table is full
+     */
+    public static int id(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        return id != null ? id : intern(value);
+    }
+
+    /**
+     * Returns the id of a string without interning it.
+     *
+     * @param value The string, or null
+     * @return The string's id, {@link #NULL_ID} for null, or {@link #UNINTERNED} if it is not in the table
+     */
+    public static int lookup(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        return id != null ? id : UNINTERNED;
+    }
+
+    /**
+     * Returns the canonical string for an id.
+     *
+     * @param id An id returned by {@link #id}
+     * @return The string, or null for {@link #NULL_ID} and {@link #UNINTERNED}
+     */
+    public static String name(int id) {
+        return id < 0 ? null : names[id];
+    }
+
+    /**
+     * Returns the canonical instance of a string, so equal values share one copy.
+     *
+     * @param value The string, or null
+     * @return The interned string, or the value itself if the table is full
+     */
+    public static String canonical(String value) {
+        int id = id(value);
+        return id == UNINTERNED ? value : name(id);
+    }
+
+    /**
+     * @return The number of distinct strings interned so far
+     */
+    public static synchronized int size() {
+        return count;
+    }
+
+    private static synchronized int intern(String value) {
+        Integer existing = ids.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (count >= MAX_SIZE) {
+            return UNINTERNED;
+        }
+        String[] current = names;
+        if (count == current.length) {
+            String[] grown = new String[count * 2];
+            System.arraycopy(current, 0, grown, 0, count);
+            current = grown;
+        }
+        int id = count++;
+        current[id] = value;
+        names = current; // Publish the array before the id can be looked up
+        ids.put(value, id);
+        return id;
+    }
+}
@@ -7,6 +7,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a user in the PantryPal application.
@@ -17,7 +18,10 @@ public class User {
     private static final String DIRECTORY_NAME = "PantryPal";
     private static final String USER_FILE_NAME = "users.csv";
     private static final String PANTRY_FILE_NAME = "pantry.csv";
-    private static final Set<String> usedIds = new HashSet<>();
+    private static final int ESTIMATED_USER_RECORD_BYTES = 90; // id, username, hash and salt of a typical user
+    private static final Set<String> usedIds = ConcurrentHashMap.newKeySet(); // Registrations hash in parallel
+    private static final LatencyHistogram LOAD_LATENCY = Metrics.histogram("users.load");
+    private static final LatencyHistogram SAVE_LATENCY = Metrics.histogram("users.save");
 
     private String id;               // Unique user ID
     private String username;         // The username of the user
@@ -80,41 +84,40 @@ public class User {
     }
 
     /**
-     * Static method to load users from the 'users.csv' file.
+     * Static method to load users from the 'users.csv' file into a username-indexed directory.
+     * If a username appears more than once, the first registration wins.
      *
-     * @return A list of User objects loaded from the file
+     * @return A directory of the User objects loaded from the file
      */
-    public static List<User> loadUsers() {
-        List<User> users = new ArrayList<>();
+    public static UserDirectory loadUsers() {
         Path userFilePath = getUserFilePath();
 
         // Check if the file exists
         if (!Files.exists(userFilePath)) {
             System.out.println("No user file found. Starting with an empty user list.");
-            return users; // Return empty list
+            return new UserDirectory(); // Return empty directory
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(userFilePath)) {
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-
-                if (parts.length == 4) { // Ensure valid data
-                    String id = parts[0];
-                    String username = parts[1];
-                    String hashedPassword = parts[2];
-                    String salt = parts[3];
-
-                    // Reconstruct the User object
-                    User user = new User(id, username, hashedPassword, salt);
-                    users.add(user);
+        long start = System.nanoTime();
+        UserDirectory users = new UserDirectory();
+        try (MappedRecordReader reader = new MappedRecordReader(userFilePath)) {
+            UserDirectory loaded = new UserDirectory((int) Math.min(Integer.MAX_VALUE, reader.size() / ESTIMATED_USER_RECORD_BYTES));
+            reader.forEachRecord(0, reader.size(), record -> {
+                if (record.fieldCount() == 4) { // Ensure valid data
+                    // Reconstruct the User object: id, username, hashedPassword, salt
+                    User user = new User(record.field(0), record.field(1), record.field(2), record.field(3));
+                    if (!loaded.contains(user.getUsername())) {
+                        loaded.add(user);
+                    }
                 }
-            }
+            });
+            users = loaded;
 
             System.out.println("Users loaded successfully.");
         } catch (IOException e) {
             System.err.println("Error loading users: " + e.getMessage());
+        } finally {
+            LOAD_LATENCY.recordSince(start);
         }
 
         return users;
@@ -134,9 +137,11 @@ public class User {
         Files.createDirectories(filePath.getParent());
 
         // Write or append user data
+        long start = System.nanoTime();
         try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-            String record = String.format("%s,%s,%s,%s%n", id, username, hashedPassword, salt);
-            writer.write(record);
+            writer.write(CsvCodec.record(id, username, hashedPassword, salt));
+        } finally {
+            SAVE_LATENCY.recordSince(start);
         }
     }
 
@@ -149,16 +154,7 @@ public class User {
      * @throws IOException If an I/O error occurs
      */
     public static void addToPantry(String userId, String itemName, String quantity, String unit, LocalDate expirationDate, String category) throws IOException {
-        Path filePath = getPantryFilePath();
-
-        // Ensure the directory exists
-        Files.createDirectories(filePath.getParent());
-
-        // Write or append pantry data
-        try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-            String record = String.format("%s,%s,%s,%s,%s,%s%n", userId, itemName, quantity, unit, expirationDate, category);
-            writer.write(record);
-        }
+        PantryStore.forFile(getPantryFilePath()).add(userId, itemName, quantity, unit, expirationDate, category);
     }
 
     /**
@@ -170,33 +166,21 @@ public class User {
      * @throws IOException If an I/O error occurs
      */
     public static boolean removeFromPantry(String userId, String itemName) throws IOException {
-        Path filePath = getPantryFilePath();
-
-        if (!Files.exists(filePath)) {
-            return false; // File does not exist, nothing to remove
-        }
-
-        List<String> allLines = Files.readAllLines(filePath);
-        List<String> updatedLines = new ArrayList<>();
-        boolean removed = false;
-
-        for (String line : allLines) {
-            String[] parts = line.split(",");
-            if (parts.length == 3) {
-                String storedUserId = parts[0];
-                String item = parts[1];
+        return PantryStore.forFile(getPantryFilePath()).remove(userId, itemName);
+    }
 
-                if (storedUserId.equals(userId) && item.equals(itemName)) {
-                    removed = true; // Skip this line to "remove" it
-                } else {
-                    updatedLines.add(line);
-                }
-            }
-        }
 
-        // Rewrite the file with the updated content
-        Files.write(filePath, updatedLines);
-        return removed;
+    /**
+     * Sets the quantity of an item in the pantry for a specific user ID.
+     *
+     * @param userId   The ID of the user
+     * @param itemName The name of the item to update
+     * @param quantity The new quantity of the item
+     * @return True if the item was updated, false if it is not in the pantry
+     * @throws IOException If an I/O error occurs
+     */
+    public static boolean updatePantryQuantity(String userId, String itemName, int quantity) throws IOException {
+        return PantryStore.forFile(getPantryFilePath()).updateQuantity(userId, itemName, quantity);
     }
 
 
@@ -222,42 +206,13 @@ public class User {
 
     /**
      * Retrieves a list of the user's pantry items from the file.
-     *
-     * @return A list of strings representing pantry items and quantities
-     * @throws IOException If an I/O error occurs
-     */
-    /**
-     * Retrieves a list of the user's pantry items from the file.
+     * Only this user's records are read, using the pantry store's userId index.
      *
      * @return A list of PantryItem objects representing pantry items and quantities
      * @throws IOException If an I/O error occurs
      */
     private List<PantryItem> getPantryItems() throws IOException {
-        Path filePath = getPantryFilePath();
-        List<PantryItem> items = new ArrayList<>();
-
-        if (Files.exists(filePath)) {
-            List<String> allLines = Files.readAllLines(filePath);
-
-            for (String line : allLines) {
-                String[] parts = line.split(",");
-                if (parts.length == 5) { // Ensure there are 5 parts (itemName, quantity, unit, expirationDate, category)
-                    String userId = parts[0];
-                    String itemName = parts[1];
-                    int quantity = Integer.parseInt(parts[2]);
-                    String unit = parts[3];
-                    LocalDate expirationDate = LocalDate.parse(parts[4]);
-                    String category = parts[5];
-
-                    if (userId.equals(id)) {  // Match the userId
-                        PantryItem item = new PantryItem(itemName, quantity, unit, expirationDate, category);
-                        items.add(item);  // Add the item to the list
-                    }
-                }
-            }
-        }
-
-        return items;
+        return PantryStore.forFile(getPantryFilePath()).read(id);
     }
 
 
@@ -278,9 +233,8 @@ public class User {
             }
             String id = idBuilder.toString();
 
-            // Ensure the ID is unique
-            if (!usedIds.contains(id)) {
-                usedIds.add(id);
+            // Ensure the ID is unique; add() claims it atomically
+            if (usedIds.add(id)) {
                 return id;
             }
 
@@ -329,4 +283,13 @@ public class User {
         String userHome = System.getProperty("user.home");
         return Paths.get(userHome, DIRECTORY_NAME, PANTRY_FILE_NAME);
     }
+
+    /**
+     * Returns the store backing every user's pantry.
+     *
+     * @return The shared pantry store
+     */
+    static PantryStore getPantryStore() {
+        return PantryStore.forFile(getPantryFilePath());
+    }
 }
@@ -0,0 +1,79 @@
+package pantrypal;
+
+import java.util.*;
+
+/**
+ * A username-indexed directory of registered users.
+ * Lookups by username are constant time, so login and the duplicate-username
+ * check cost the same whether there are ten users or a million.
+ */
+public class UserDirectory implements Iterable<User> {
+    private final Map<String, User> usersByName; // username -> user, in registration order
+
+    /**
+     * Constructs an empty user directory.
+     */
+    public UserDirectory() {
+        this.usersByName = new LinkedHashMap<>();
+    }
+
+    /**
+     * Constructs an empty user directory sized for the expected number of users.
+     *
+     * @param expectedUsers The number of users the directory should hold without resizing
+     */
+    public UserDirectory(int expectedUsers) {
+        this.usersByName = LinkedHashMap.newLinkedHashMap(expectedUsers);
+    }
+
+    /**
+     * Adds a user to the directory.
+     *
+     * @param user The user to add
+     * @throws IllegalArgumentException If a user with the same username already exists
+     */
+    public void add(User user) {
+        if (usersByName.putIfAbsent(user.getUsername(), user) != null) {
+            throw new IllegalArgumentException("Username already exists: " + user.getUsername());
+        }
+    }
+
+    /**
+     * Finds a user by username.
+     *
+     * @param username The username to look up
+     * @return The user, or null if no user has that username
+     */
+    public User find(String username) {
+        return usersByName.get(username);
+    }
+
+    /**
+     * Checks whether a username is already taken.
+     *
+     * @param username The username to check
+     * @return True if a user with that username exists
+     */
+    public boolean contains(String username) {
+        return usersByName.containsKey(username);
+    }
+
+    /**
+     * Returns the number of users in the directory.
+     *
+     * @return The number of users
+     */
+    public int size() {
+        return usersByName.size();
+    }
+
+    /**
+     * Returns the users in registration order.
+     *
+     * @return An iterator over the users
+     */
+    @Override
+    public Iterator<User> iterator() {
+        return Collections.unmodifiableCollection(usersByName.values()).iterator();
+    }
+}
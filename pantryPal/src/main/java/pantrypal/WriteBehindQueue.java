@@ -0,0 +1,300 @@
+package pantrypal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces record appends from all callers into batched writes.
+ * Appends are queued in memory and written by a background flusher once the queue holds
+ * {@code pantrypal.writeBehind.maxBytes} bytes or has waited {@code pantrypal.writeBehind.intervalMillis},
+ * and again at shutdown. Each batch opens every target file once and writes its records in one call.
+ *
+ * <p>Readers of a file must call {@link #flush(Path)} first so they see their own appends. Each write
+ * holds the file's {@link StripedFileLock} shared, so another process rewriting the file never
+ * loses a batch to the old copy.</p>
+ *
+ * <p>A file that cannot be written does not hold up the others. Its unwritten records stay queued,
+ * after the bytes that did land, and are retried with the next batch. The error is reported to the
+ * next caller that appends to or flushes that file.</p>
+ */
+public class WriteBehindQueue {
+    /**
+     * How hard a batch is pushed to disk before it is considered written.
+     */
+    public enum Durability {
+        FSYNC, // Force every batch to the storage device
+        NONE   // Leave batches to the operating system's page cache
+    }
+
+    private static final LatencyHistogram BATCH_LATENCY = Metrics.histogram("writeBehind.batch");
+    private static final LongAdder RECORDS_WRITTEN = Metrics.counter("writeBehind.records");
+    private static final LongAdder BYTES_WRITTEN = Metrics.counter("writeBehind.bytes");
+
+    private static final WriteBehindQueue shared = new WriteBehindQueue(
+            Integer.getInteger("pantrypal.writeBehind.maxBytes", 64 * 1024),
+            Long.getLong("pantrypal.writeBehind.intervalMillis", 200),
+            Durability.valueOf(System.getProperty("pantrypal.durability", "none").toUpperCase(Locale.ROOT)));
+
+    static {
+        Metrics.gauge("writeBehind.pendingBytes", shared::pendingBytes);
+    }
+
+    private final int maxPendingBytes;          // Queue size that triggers a flush
+    private final long flushIntervalMillis;     // Longest time an append waits before being written
+    private final Durability durability;
+    private final Map<Path, List<byte[]>> pending = new LinkedHashMap<>(); // Queued records per file
+    private final ReentrantLock writeLock = new ReentrantLock();           // Serializes batch writes
+    private int pendingBytes;
+    private final Map<Path, IOException> failures = new HashMap<>();       // Write errors not yet reported, per file
+
+    /**
+     * Constructs a queue and starts its background flusher.
+     *
+     * @param maxPendingBytes     The number of queued bytes that triggers a flush
+     * @param flushIntervalMillis The longest time an append waits before being written
+     * @param durability          Whether each batch is forced to disk
+     */
+    public WriteBehindQueue(int maxPendingBytes, long flushIntervalMillis, Durability durability) {
+        this.maxPendingBytes = maxPendingBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.durability = durability;
+
+        Thread flusher = new Thread(this::runFlusher, "write-behind-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                System.err.println("Error flushing pending writes: " + e.getMessage());
+            }
+        }, "write-behind-shutdown"));
+    }
+
+    /**
+     * Returns the queue shared by all of PantryPal's persistence classes.
+     *
+     * @return The shared queue
+     */
+    public static WriteBehindQueue shared() {
+        return shared;
+    }
+
+    /**
+     * Queues a record to be appended to a file.
+     * If the queue has fallen far behind, the caller writes the backlog itself.
+     *
+     * @param path   The file to append to
+     * @param record The record, including its line terminator
+     * @return The number of bytes queued
+     * @throws IOException If an earlier background write to this file failed
+     */
+    public int append(Path path, String record) throws IOException {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        boolean backlogged;
+        synchronized (this) {
+            throwFailure(path);
+            pending.computeIfAbsent(path, key -> new ArrayList<>()).add(bytes);
+            pendingBytes += bytes.length;
+            if (pendingBytes >= maxPendingBytes) {
+                notifyAll(); // Wake the flusher early
+            }
+            backlogged = pendingBytes >= 4L * maxPendingBytes;
+        }
+        if (backlogged) {
+            flush(path);
+        }
+        return bytes.length;
+    }
+
+    /**
+     * Writes every queued record now, and waits for any batch already being written.
+     *
+     * @param path The file the caller is about to read
+     * @throws IOException If writing to this file fails, now or in an earlier background flush
+     */
+    public void flush(Path path) throws IOException {
+        drain();
+        synchronized (this) {
+            throwFailure(path);
+        }
+    }
+
+    /**
+     * Writes every queued record now, and waits for any batch already being written.
+     * For callers that wrote to many files, such as the shutdown hook.
+     *
+     * @throws IOException If writing to any file fails, now or in an earlier background flush
+     */
+    public void flush() throws IOException {
+        drain();
+        synchronized (this) {
+            if (!failures.isEmpty()) {
+                throwFailure(failures.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Takes everything queued and writes it, one gathering write per file. A file that fails keeps
+     * its unwritten records queued and its error recorded; the other files are still written.
+     *
+     * @return True if every file was written
+     */
+    private boolean drain() {
+        writeLock.lock();
+        try {
+            Map<Path, List<byte[]>> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return true;
+                }
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+                pendingBytes = 0;
+            }
+
+            boolean written = true;
+            for (Map.Entry<Path, List<byte[]>> entry : batch.entrySet()) {
+                ByteBuffer[] buffers = buffers(entry.getValue());
+                try {
+                    write(entry.getKey(), buffers);
+                } catch (IOException e) {
+                    failed(entry.getKey(), buffers, e);
+                    written = false;
+                }
+            }
+            return written;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private synchronized long pendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * Records a failed write and queues what it did not write ahead of the file's newer records.
+     * Only the unwritten tail goes back, so a partial write is completed rather than repeated.
+     */
+    private synchronized void failed(Path path, ByteBuffer[] buffers, IOException e) {
+        List<byte[]> unwritten = new ArrayList<>();
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                unwritten.add(Arrays.copyOfRange(buffer.array(), buffer.position(), buffer.limit()));
+                pendingBytes += buffer.remaining();
+            }
+        }
+        List<byte[]> newer = pending.remove(path);
+        if (newer != null) {
+            unwritten.addAll(newer);
+        }
+        if (!unwritten.isEmpty()) {
+            pending.put(path, unwritten); // At the back, so the next batch tries the other files first
+        }
+        failures.put(path, e);
+        System.err.println("Error writing queued records to " + path + ": " + e.getMessage());
+    }
+
+    /**
+     * Writes the queue and then runs an action while no batch can be written.
+     * Used to rewrite a file without racing the flusher.
+     *
+     * @param path   The file the action rewrites
+     * @param action The action to run
+     * @throws IOException If writing the file's queued records or the action fails
+     */
+    public void runExclusive(Path path, IOAction action) throws IOException {
+        writeLock.lock();
+        try {
+            drain();
+            synchronized (this) {
+                throwFailure(path);
+            }
+            action.run();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * An action that may throw an IOException.
+     */
+    public interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static ByteBuffer[] buffers(List<byte[]> records) {
+        ByteBuffer[] buffers = new ByteBuffer[records.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(records.get(i));
+        }
+        return buffers;
+    }
+
+    /**
+     * Appends a batch of records to one file with a single gathering write.
+     * If it fails, the buffers' positions show how much was written.
+     */
+    private void write(Path path, ByteBuffer[] buffers) throws IOException {
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (ByteBuffer buffer : buffers) {
+            bytes += buffer.remaining();
+        }
+
+        Files.createDirectories(path.getParent());
+        // Shared with other appenders; a rewrite of the file in any process waits for the batch to land
+        try (StripedFileLock.Handle lock = StripedFileLock.shared(path);
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.APPEND)) {
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                channel.write(buffers);
+            }
+            if (durability == Durability.FSYNC) {
+                channel.force(false);
+            }
+        }
+        BATCH_LATENCY.recordSince(start);
+        RECORDS_WRITTEN.add(buffers.length);
+        BYTES_WRITTEN.add(bytes);
+    }
+
+    private void runFlusher() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (pending.isEmpty()) {
+                        wait();
+                    }
+                    long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                    long remaining;
+                    while (pendingBytes < maxPendingBytes && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                        wait(remaining);
+                    }
+                }
+                if (!drain()) {
+                    Thread.sleep(flushIntervalMillis); // Back off before retrying the files that failed
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void throwFailure(Path path) throws IOException {
+        IOException e = failures.remove(path);
+        if (e != null) {
+            throw e;
+        }
+    }
+}